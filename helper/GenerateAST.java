@@ -11,28 +11,42 @@ public class GenerateAST {
         }
         String output_dir = args[0];
         define_ast(output_dir, "Expr", Arrays.asList(
-                "Assign     : Token name, Expr value",
+                "Array      : Token bracket, List<Expr> elements",
+                "Assign     : Token name, Expr value | int depth = -1, int slot = -1",
                 "Binary     : Expr left, Token operator, Expr right",
-                "Call       : Expr callee, Token paren, List<Expr> arguments",
-                "Get        : Expr object, Token name",
-                "Set        : Expr object, Token name, Expr value",
-                "Super      : Token keyword, Token method",
-                "This       : Token keyword",
+                "Call       : Expr callee, Token paren, List<Expr> arguments | MethodCache cache = null",
+                "Dict       : Token brace, List<Expr> keys, List<Expr> values",
+                "Get        : Expr object, Token name | int slot = -1",
+                "Index      : Expr object, Token bracket, Expr index",
+                "IndexSet   : Expr object, Token bracket, Expr index, Expr value",
+                "Set        : Expr object, Token name, Expr value | int slot = -1",
+                "Super      : Token keyword, Token method | int depth = -1, MethodCache cache = null",
+                "This       : Token keyword | int depth = -1",
                 "Grouping   : Expr expression",
                 "Literal    : Object value",
                 "Logical    : Expr left, Token operator, Expr right",
                 "Unary      : Token operator, Expr right",
-                "Variable   : Token name"));
+                "Variable   : Token name | int depth = -1, int slot = -1, boolean lazy = false"));
         define_ast(output_dir, "Stmt", Arrays.asList(
                 "Block          : List<Stmt> statements",
+                "Break          : Token keyword",
+                "Breakpoint     : Stmt statement, int line",
                 "Class          : Token name, Expr.Variable superclass, List<Stmt.Function> methods",
+                "Continue       : Token keyword",
                 "Expression     : Expr expression",
-                "Function       : Token name, List<Token> params, List<Stmt> body",
+                "ForIn          : Token keyword, Token name, Expr iterable, Stmt body",
+                "Function       : Token name, List<Token> params, List<Stmt> body, DeferredBody deferred"
+                        + " | boolean generator = false",
                 "If             : Expr condition, Stmt then_branch, Stmt else_branch",
+                "Lazy           : Token name, Expr initializer",
+                "Match          : Token keyword, Expr subject, List<Stmt> arms, Stmt else_branch, MatchTable table",
                 "Print          : Expr expression",
                 "Return         : Token keyword, Expr value",
+                "Struct         : Token name, List<Token> fields",
+                "Try            : Token keyword, List<Stmt> body, Token name, List<Stmt> handler",
                 "Var            : Token name, Expr initializer",
-                "While          : Expr condition, Stmt body"));
+                "While          : Expr condition, Stmt body, Expr increment | InductionVariable induction = null",
+                "Yield          : Token keyword, Expr value"));
     }
 
     private static void define_ast(String output_dir, String base_name, List<String> types) throws IOException {
@@ -48,8 +62,13 @@ public class GenerateAST {
         for (String type : types) {
             String class_name = type.split(":")[0].trim();
             String fields = type.split(":")[1].trim();
+            String resolved = ""; // fields after '|' are filled in later (resolver, interpreter), not by the constructor
+            if (fields.contains("|")) {
+                resolved = fields.split("\\|")[1].trim();
+                fields = fields.split("\\|")[0].trim();
+            }
 
-            define_type(writer, base_name, class_name, fields);
+            define_type(writer, base_name, class_name, fields, resolved);
         }
 
         writer.println();
@@ -59,7 +78,8 @@ public class GenerateAST {
         writer.close();
     }
 
-    private static void define_type(PrintWriter writer, String base_name, String class_name, String field_list) {
+    private static void define_type(PrintWriter writer, String base_name, String class_name, String field_list,
+            String resolved_list) {
         writer.println("    static class " + class_name + " extends " + base_name + " {"); // Class header
         writer.println("        " + class_name + "(" + field_list + ") {"); // Constructor header
         String[] fields = field_list.split(", ");
@@ -80,6 +100,11 @@ public class GenerateAST {
         for (String field : fields) { // Fields
             writer.println("        final " + field + ";");
         }
+        if (!resolved_list.isEmpty()) {
+            for (String field : resolved_list.split(", ")) { // Mutable fields
+                writer.println("        " + field + ";");
+            }
+        }
 
         writer.println("    }");
 
@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Base for optimizer passes that rewrite the tree. Every visit rebuilds its
+// node only if one of its children was replaced, so a pass just overrides
+// the nodes it cares about. Rebuilt nodes are unresolved; the optimizer runs
+// the resolver again once all passes are done.
+class AstTransformer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    Expr transform(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    Stmt transform(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    List<Stmt> transform(List<Stmt> statements) {
+        List<Stmt> result = null;
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            Stmt replaced = transform(stmt);
+            if (replaced != stmt && result == null) {
+                result = new ArrayList<>(statements.subList(0, i));
+            }
+            if (result != null) {
+                result.add(replaced);
+            }
+        }
+        return result == null ? statements : result;
+    }
+
+    List<Expr> transform_all(List<Expr> exprs) {
+        List<Expr> result = null;
+        for (int i = 0; i < exprs.size(); i++) {
+            Expr expr = exprs.get(i);
+            Expr replaced = transform(expr);
+            if (replaced != expr && result == null) {
+                result = new ArrayList<>(exprs.subList(0, i));
+            }
+            if (result != null) {
+                result.add(replaced);
+            }
+        }
+        return result == null ? exprs : result;
+    }
+
+    @Override
+    public Expr visit_assign_expr(Expr.Assign expr) {
+        Expr value = transform(expr.value);
+        return value == expr.value ? expr : new Expr.Assign(expr.name, value);
+    }
+
+    @Override
+    public Expr visit_binary_expr(Expr.Binary expr) {
+        Expr left = transform(expr.left);
+        Expr right = transform(expr.right);
+        if (left == expr.left && right == expr.right)
+            return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visit_call_expr(Expr.Call expr) {
+        Expr callee = transform(expr.callee);
+        List<Expr> arguments = transform_all(expr.arguments);
+        if (callee == expr.callee && arguments == expr.arguments)
+            return expr;
+        return new Expr.Call(callee, expr.paren, arguments);
+    }
+
+    @Override
+    public Expr visit_get_expr(Expr.Get expr) {
+        Expr object = transform(expr.object);
+        return object == expr.object ? expr : new Expr.Get(object, expr.name);
+    }
+
+    @Override
+    public Expr visit_array_expr(Expr.Array expr) {
+        List<Expr> elements = transform_all(expr.elements);
+        return elements == expr.elements ? expr : new Expr.Array(expr.bracket, elements);
+    }
+
+    @Override
+    public Expr visit_dict_expr(Expr.Dict expr) {
+        List<Expr> keys = transform_all(expr.keys);
+        List<Expr> values = transform_all(expr.values);
+        if (keys == expr.keys && values == expr.values)
+            return expr;
+        return new Expr.Dict(expr.brace, keys, values);
+    }
+
+    @Override
+    public Expr visit_index_expr(Expr.Index expr) {
+        Expr object = transform(expr.object);
+        Expr index = transform(expr.index);
+        if (object == expr.object && index == expr.index)
+            return expr;
+        return new Expr.Index(object, expr.bracket, index);
+    }
+
+    @Override
+    public Expr visit_indexset_expr(Expr.IndexSet expr) {
+        Expr object = transform(expr.object);
+        Expr index = transform(expr.index);
+        Expr value = transform(expr.value);
+        if (object == expr.object && index == expr.index && value == expr.value)
+            return expr;
+        return new Expr.IndexSet(object, expr.bracket, index, value);
+    }
+
+    @Override
+    public Expr visit_set_expr(Expr.Set expr) {
+        Expr object = transform(expr.object);
+        Expr value = transform(expr.value);
+        if (object == expr.object && value == expr.value)
+            return expr;
+        return new Expr.Set(object, expr.name, value);
+    }
+
+    @Override
+    public Expr visit_super_expr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visit_this_expr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visit_grouping_expr(Expr.Grouping expr) {
+        Expr inner = transform(expr.expression);
+        return inner == expr.expression ? expr : new Expr.Grouping(inner);
+    }
+
+    @Override
+    public Expr visit_literal_expr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visit_logical_expr(Expr.Logical expr) {
+        Expr left = transform(expr.left);
+        Expr right = transform(expr.right);
+        if (left == expr.left && right == expr.right)
+            return expr;
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visit_unary_expr(Expr.Unary expr) {
+        Expr right = transform(expr.right);
+        return right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visit_variable_expr(Expr.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public Stmt visit_block_stmt(Stmt.Block stmt) {
+        List<Stmt> statements = transform(stmt.statements);
+        return statements == stmt.statements ? stmt : new Stmt.Block(statements);
+    }
+
+    @Override
+    public Stmt visit_break_stmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visit_breakpoint_stmt(Stmt.Breakpoint stmt) {
+        Stmt statement = transform(stmt.statement);
+        return statement == stmt.statement ? stmt : new Stmt.Breakpoint(statement, stmt.line);
+    }
+
+    @Override
+    public Stmt visit_class_stmt(Stmt.Class stmt) {
+        List<Stmt.Function> methods = null;
+        for (int i = 0; i < stmt.methods.size(); i++) {
+            Stmt.Function method = stmt.methods.get(i);
+            Stmt.Function replaced = (Stmt.Function) transform(method);
+            if (replaced != method && methods == null) {
+                methods = new ArrayList<>(stmt.methods.subList(0, i));
+            }
+            if (methods != null) {
+                methods.add(replaced);
+            }
+        }
+        return methods == null ? stmt : new Stmt.Class(stmt.name, stmt.superclass, methods);
+    }
+
+    @Override
+    public Stmt visit_continue_stmt(Stmt.Continue stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visit_expression_stmt(Stmt.Expression stmt) {
+        Expr expression = transform(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+    }
+
+    @Override
+    public Stmt visit_function_stmt(Stmt.Function stmt) {
+        if (stmt.deferred != null) // not parsed yet, nothing to rewrite
+            return stmt;
+        List<Stmt> body = transform(stmt.body);
+        if (body == stmt.body)
+            return stmt;
+        Stmt.Function function = new Stmt.Function(stmt.name, stmt.params, body, null);
+        function.generator = stmt.generator;
+        return function;
+    }
+
+    @Override
+    public Stmt visit_forin_stmt(Stmt.ForIn stmt) {
+        Expr iterable = transform(stmt.iterable);
+        Stmt body = transform(stmt.body);
+        if (iterable == stmt.iterable && body == stmt.body)
+            return stmt;
+        return new Stmt.ForIn(stmt.keyword, stmt.name, iterable, body);
+    }
+
+    @Override
+    public Stmt visit_if_stmt(Stmt.If stmt) {
+        Expr condition = transform(stmt.condition);
+        Stmt then_branch = transform(stmt.then_branch);
+        Stmt else_branch = transform(stmt.else_branch);
+        if (condition == stmt.condition && then_branch == stmt.then_branch && else_branch == stmt.else_branch)
+            return stmt;
+        return new Stmt.If(condition, then_branch, else_branch);
+    }
+
+    @Override
+    public Stmt visit_lazy_stmt(Stmt.Lazy stmt) {
+        Expr initializer = transform(stmt.initializer);
+        return initializer == stmt.initializer ? stmt : new Stmt.Lazy(stmt.name, initializer);
+    }
+
+    @Override
+    public Stmt visit_match_stmt(Stmt.Match stmt) {
+        Expr subject = transform(stmt.subject);
+        List<Stmt> arms = transform(stmt.arms);
+        Stmt else_branch = transform(stmt.else_branch);
+        if (subject == stmt.subject && arms == stmt.arms && else_branch == stmt.else_branch)
+            return stmt;
+        return new Stmt.Match(stmt.keyword, subject, arms, else_branch, stmt.table);
+    }
+
+    @Override
+    public Stmt visit_print_stmt(Stmt.Print stmt) {
+        Expr expression = transform(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Print(expression);
+    }
+
+    @Override
+    public Stmt visit_return_stmt(Stmt.Return stmt) {
+        Expr value = transform(stmt.value);
+        return value == stmt.value ? stmt : new Stmt.Return(stmt.keyword, value);
+    }
+
+    @Override
+    public Stmt visit_try_stmt(Stmt.Try stmt) {
+        List<Stmt> body = transform(stmt.body);
+        List<Stmt> handler = transform(stmt.handler);
+        if (body == stmt.body && handler == stmt.handler)
+            return stmt;
+        return new Stmt.Try(stmt.keyword, body, stmt.name, handler);
+    }
+
+    @Override
+    public Stmt visit_struct_stmt(Stmt.Struct stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visit_var_stmt(Stmt.Var stmt) {
+        Expr initializer = transform(stmt.initializer);
+        return initializer == stmt.initializer ? stmt : new Stmt.Var(stmt.name, initializer);
+    }
+
+    @Override
+    public Stmt visit_while_stmt(Stmt.While stmt) {
+        Expr condition = transform(stmt.condition);
+        Stmt body = transform(stmt.body);
+        Expr increment = transform(stmt.increment);
+        if (condition == stmt.condition && body == stmt.body && increment == stmt.increment)
+            return stmt;
+        return new Stmt.While(condition, body, increment);
+    }
+
+    @Override
+    public Stmt visit_yield_stmt(Stmt.Yield stmt) {
+        Expr value = transform(stmt.value);
+        return value == stmt.value ? stmt : new Stmt.Yield(stmt.keyword, value);
+    }
+}
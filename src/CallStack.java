@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+// Reigai-level call stack, kept on the heap alongside the JVM one. It puts a
+// configurable bound on recursion, so running out of stack is reported as a
+// runtime error at the call that went too deep instead of a JVM crash.
+class CallStack {
+    static final int DEFAULT_MAX_DEPTH = 10_000;
+    static final int MAX_DEPTH_LIMIT = 1_000_000; // keeps the thread stack under 4GB
+
+    private final int max_depth;
+    private Token[] sites = new Token[64];
+    private ReigaiCallable[] callees = new ReigaiCallable[64];
+    private int depth = 0;
+
+    CallStack(int max_depth) {
+        this.max_depth = max_depth;
+    }
+
+    void push(Token site, ReigaiCallable callee) {
+        if (depth == max_depth) {
+            throw new RuntimeError(site, "Stack overflow, more than " + max_depth + " nested calls.");
+        }
+        if (depth == sites.length) {
+            sites = Arrays.copyOf(sites, depth * 2);
+            callees = Arrays.copyOf(callees, depth * 2);
+        }
+        sites[depth] = site;
+        callees[depth] = callee;
+        depth++;
+    }
+
+    void pop() {
+        depth--;
+        sites[depth] = null;
+        callees[depth] = null;
+    }
+
+    int max_depth() {
+        return max_depth;
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    Token site(int index) { // where the index-th active call was made, 0 is the outermost
+        return sites[index];
+    }
+
+    ReigaiCallable callee(int index) {
+        return callees[index];
+    }
+
+    void clear() { // after a runtime error has unwound everything
+        Arrays.fill(sites, 0, depth, null);
+        Arrays.fill(callees, 0, depth, null);
+        depth = 0;
+    }
+
+    // JVM stack to give the interpreter thread so max_depth nested calls fit.
+    // Each Reigai call takes a handful of visitor frames; this leaves headroom
+    // for deeply nested expressions inside each call.
+    static long thread_stack_size(int max_depth) {
+        final long bytes_per_call = 4 * 1024;
+        return Math.max(max_depth * bytes_per_call, 16L * 1024 * 1024);
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Which classes define each method name, updated as class declarations run.
+// While a name is defined by a single class, every instance of a subclass
+// that has a method of that name gets that same method, so call sites can
+// cache it for the whole subtree (see MethodCache). A later declaration
+// that defines the name again bumps the version, which drops those caches.
+class ClassHierarchy {
+    private final Map<String, ReigaiClass> definers = new HashMap<>();
+    private final Set<String> overridden = new HashSet<>();
+    private int version = 0;
+
+    void add(ReigaiClass cl) {
+        for (String name : cl.method_names()) {
+            if (overridden.contains(name))
+                continue;
+            if (definers.containsKey(name)) {
+                definers.remove(name);
+                overridden.add(name);
+                version++;
+            } else {
+                definers.put(name, cl);
+            }
+        }
+    }
+
+    int version() {
+        return version;
+    }
+
+    MethodCache cache(ReigaiClass cl, String name, ReigaiFunction method) {
+        ReigaiClass definer = definers.get(name);
+        if (definer != null)
+            return new MethodCache(definer, method, true, version);
+        return new MethodCache(cl, method, false, version);
+    }
+}
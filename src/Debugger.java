@@ -0,0 +1,196 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Command line debugger, attached with --break=line. A breakpoint is a
+// Stmt.Breakpoint wrapper swapped into the statement list holding the first
+// statement of its line, and swapped out again when it is deleted. Nothing
+// else in the interpreter checks for the debugger, so code without an
+// active breakpoint runs exactly as fast as without one.
+//
+// Stepping wraps every line until the next pause. Only statements that sit
+// in a list (a block, a body, the top level) can be stopped at.
+class Debugger {
+    private final Interpreter interpreter;
+    private final Map<Integer, Site> sites = new HashMap<>();
+    private final Set<Integer> breakpoints = new TreeSet<>();
+    private final BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+    private boolean stepping = false;
+
+    private static class Site {
+        final List<Stmt> list;
+        final int index;
+        final Stmt statement;
+        final int line;
+        final Resolver scope; // names visible as the statement starts
+
+        Site(List<Stmt> list, int index, int line, Resolver scope) {
+            this.list = list;
+            this.index = index;
+            this.statement = list.get(index);
+            this.line = line;
+            this.scope = scope;
+        }
+    }
+
+    Debugger(Interpreter interpreter, List<Stmt> program, Map<Stmt, Integer> lines, Map<Stmt, Resolver> scopes) {
+        this.interpreter = interpreter;
+
+        new AstTransformer() {
+            @Override
+            List<Stmt> transform(List<Stmt> statements) {
+                for (int i = 0; i < statements.size(); i++) {
+                    Stmt stmt = statements.get(i);
+                    Integer line = lines.get(stmt);
+                    if (line != null && !sites.containsKey(line)) {
+                        sites.put(line, new Site(statements, i, line, scopes.get(stmt)));
+                    }
+                    transform(stmt);
+                }
+                return statements;
+            }
+        }.transform(program);
+    }
+
+    boolean set_breakpoint(int line) {
+        Site site = sites.get(line);
+        if (site == null) {
+            System.out.println("No statement starts on line " + line + ".");
+            return false;
+        }
+        breakpoints.add(line);
+        wrap(site);
+        return true;
+    }
+
+    private void delete_breakpoint(int line) {
+        if (breakpoints.remove(line) && !stepping) {
+            unwrap(sites.get(line));
+        }
+    }
+
+    private void wrap(Site site) {
+        if (!(site.list.get(site.index) instanceof Stmt.Breakpoint)) {
+            site.list.set(site.index, new Stmt.Breakpoint(site.statement, site.line));
+        }
+    }
+
+    private void unwrap(Site site) {
+        site.list.set(site.index, site.statement);
+    }
+
+    private void step(boolean on) {
+        stepping = on;
+        for (Site site : sites.values()) {
+            if (on) {
+                wrap(site);
+            } else if (!breakpoints.contains(site.line)) {
+                unwrap(site);
+            }
+        }
+    }
+
+    // Called before the wrapped statement runs; returns when it should run
+    void pause(Stmt.Breakpoint at) {
+        Site site = sites.get(at.line);
+        System.out.println("Paused at line " + at.line + ".");
+
+        while (true) {
+            System.out.print("debug :> ");
+            String line;
+            try {
+                line = input.readLine();
+            } catch (IOException error) {
+                line = null;
+            }
+
+            if (line == null) { // no one to talk to, run to the end
+                breakpoints.clear();
+                step(false);
+                return;
+            }
+
+            String[] words = line.trim().split("\\s+", 2);
+            String argument = words.length > 1 ? words[1] : "";
+            switch (words[0]) {
+                case "c":
+                case "continue":
+                    step(false);
+                    return;
+                case "s":
+                case "step":
+                    step(true);
+                    return;
+                case "b":
+                case "break":
+                    Integer added = parse_line(argument);
+                    if (added != null && set_breakpoint(added))
+                        System.out.println("Breakpoint at line " + added + ".");
+                    break;
+                case "d":
+                case "delete":
+                    Integer removed = parse_line(argument);
+                    if (removed != null)
+                        delete_breakpoint(removed);
+                    break;
+                case "p":
+                case "print":
+                    print(argument, site.scope);
+                    break;
+                case "locals":
+                    for (String name : site.scope.local_names()) {
+                        if (!name.equals("super")) {
+                            System.out.print(name + " = ");
+                            print(name, site.scope);
+                        }
+                    }
+                    break;
+                case "bt":
+                case "backtrace":
+                    backtrace();
+                    break;
+                case "q":
+                case "quit":
+                    System.exit(0);
+                    break;
+                default:
+                    System.out.println("Commands: continue, step, break <line>, delete <line>, print <expression>, "
+                            + "locals, backtrace, quit.");
+            }
+        }
+    }
+
+    private Integer parse_line(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException error) {
+            System.out.println("Expect a line number.");
+            return null;
+        }
+    }
+
+    // Parses the expression as if it were written where the program is
+    // paused, so it sees the same variables
+    private void print(String text, Resolver scope) {
+        char[] source = text.toCharArray();
+        TokenBuffer tokens = new Scanner(source, source.length).scan_tokens();
+        Expr expr = new Parser(tokens, false, scope.snapshot()).parse_expression();
+        if (Reigai.had_error || expr == null) {
+            Reigai.had_error = false;
+            return;
+        }
+        System.out.println(interpreter.inspect(expr));
+    }
+
+    private void backtrace() {
+        CallStack calls = interpreter.call_stack;
+        for (int i = calls.depth() - 1; i >= 0; i--) {
+            System.out.println("  " + calls.callee(i) + " called from line " + calls.site(i).line);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.List;
+
+// Body of a function that was only brace-matched by the parser. It is parsed
+// and resolved the first time the function is called, which saves startup
+// time for scripts that define far more functions than a run uses.
+class DeferredBody {
+    private final TokenBuffer tokens;
+    private final int start;
+    private Resolver resolver = null;
+    private boolean completed = false;
+    private boolean failed = false; // every call reports the errors, not just the first
+
+    DeferredBody(TokenBuffer tokens, int start) {
+        this.tokens = tokens;
+        this.start = start;
+    }
+
+    void resolve_with(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    void complete(Stmt.Function function) {
+        if (!completed) {
+            completed = true;
+            parse(function);
+        }
+        if (failed) {
+            throw new RuntimeError(function.name, "Can't call '" + function.name.lexeme + "', its body has errors.");
+        }
+    }
+
+    private void parse(Stmt.Function function) {
+        // only errors in this body count, not ones reported before it
+        boolean earlier_errors = Reigai.had_error;
+        Reigai.had_error = false;
+        failed = true;
+        try {
+            // the snapshot resolver resolves the body while it is parsed
+            Parser parser = new Parser(tokens, true, resolver);
+            List<Stmt> statements = parser.deferred_block(start);
+            failed = Reigai.had_error;
+            if (!failed) {
+                function.body.addAll(statements);
+                function.generator = parser.deferred_yields();
+            }
+        } finally {
+            Reigai.had_error = earlier_errors || failed;
+        }
+    }
+}
@@ -1,16 +1,63 @@
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+// Globals are kept in an array indexed by the symbol id of their name, with
+// UNDEFINED in the slots of names that were never defined. A lazy global
+// that hasn't been read yet is UNDEFINED as well, with its LazyValue kept
+// aside, so reading any other global costs nothing extra. Every other
+// environment keeps its values in slots, in the order they are defined,
+// which is the order the Resolver hands the slot numbers out in.
 class Environment {
+    private static final Object UNDEFINED = new Object();
+
     final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    private Object[] slots;
+    private int count = 0;
+    private Map<Integer, LazyValue> lazy_globals = null;
 
     Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        if (enclosing == null) {
+            slots = new Object[Math.max(Symbols.count(), 16)];
+            Arrays.fill(slots, UNDEFINED);
+        } else {
+            slots = new Object[4];
+        }
     }
 
     void define(String name, Object value) {
-        values.put(name, value);
+        if (enclosing == null) {
+            define_global(Symbols.intern(name), value);
+            return;
+        }
+        if (count == slots.length) {
+            slots = Arrays.copyOf(slots, count * 2);
+        }
+        slots[count++] = value;
+    }
+
+    void define_global(int symbol, Object value) {
+        if (symbol >= slots.length) {
+            int length = slots.length;
+            slots = Arrays.copyOf(slots, Math.max(symbol + 1, length * 2));
+            Arrays.fill(slots, length, slots.length, UNDEFINED);
+        }
+        slots[symbol] = value;
+        if (lazy_globals != null)
+            lazy_globals.remove(symbol);
+    }
+
+    void define_lazy(String name, LazyValue value) {
+        if (enclosing != null) {
+            define(name, value);
+            return;
+        }
+        int symbol = Symbols.intern(name);
+        define_global(symbol, UNDEFINED);
+        if (lazy_globals == null)
+            lazy_globals = new HashMap<>();
+        lazy_globals.put(symbol, value);
     }
 
     Environment ancestor(int distance) {
@@ -21,34 +68,39 @@ class Environment {
         return environment;
     }
 
-    Object get_at(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    Object get_at(int distance, int slot) {
+        return ancestor(distance).slots[slot];
     }
 
-    void assign_at(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    void assign_at(int distance, int slot, Object value) {
+        ancestor(distance).slots[slot] = value;
     }
 
-    void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+    void assign(int symbol, Token name, Object value) { // globals only
+        if (symbol < slots.length && slots[symbol] != UNDEFINED) {
+            slots[symbol] = value;
             return;
         }
-        if (enclosing != null) {
-            enclosing.assign(name, value);
+        if (lazy_globals != null && lazy_globals.remove(symbol) != null) { // assigned before it was read
+            slots[symbol] = value;
             return;
         }
         throw new RuntimeError(name, "Undefined variable: '" + name.lexeme + "'.");
     }
 
-    Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+    Object get(int symbol, Token name) { // globals only
+        Object value = symbol < slots.length ? slots[symbol] : UNDEFINED;
+        if (value == UNDEFINED) {
+            LazyValue lazy = lazy_globals != null ? lazy_globals.get(symbol) : null;
+            if (lazy != null) {
+                value = lazy.force();
+                if (lazy_globals.remove(symbol, lazy)) // not redefined while it ran
+                    slots[symbol] = value;
+                return value;
+            }
+            throw new RuntimeError(name, "Undefined varaible: '" + name.lexeme + "'.");
         }
-        if (enclosing != null)
-            return enclosing.get(name);
-
-        throw new RuntimeError(name, "Undefined varaible: '" + name.lexeme + "'.");
+        return value;
     }
 
-}
\ No newline at end of file
+}
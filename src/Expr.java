@@ -2,10 +2,14 @@ import java.util.List;
 
 abstract class Expr {
     interface Visitor<R> {
+        R visit_array_expr(Array expr);
         R visit_assign_expr(Assign expr);
         R visit_binary_expr(Binary expr);
         R visit_call_expr(Call expr);
+        R visit_dict_expr(Dict expr);
         R visit_get_expr(Get expr);
+        R visit_index_expr(Index expr);
+        R visit_indexset_expr(IndexSet expr);
         R visit_set_expr(Set expr);
         R visit_super_expr(Super expr);
         R visit_this_expr(This expr);
@@ -15,6 +19,20 @@ abstract class Expr {
         R visit_unary_expr(Unary expr);
         R visit_variable_expr(Variable expr);
     }
+    static class Array extends Expr {
+        Array(Token bracket, List<Expr> elements) {
+            this.bracket = bracket;
+            this.elements = elements;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_array_expr(this);
+        }
+
+        final Token bracket;
+        final List<Expr> elements;
+    }
     static class Assign extends Expr {
         Assign(Token name, Expr value) {
             this.name = name;
@@ -28,6 +46,8 @@ abstract class Expr {
 
         final Token name;
         final Expr value;
+        int depth = -1;
+        int slot = -1;
     }
     static class Binary extends Expr {
         Binary(Expr left, Token operator, Expr right) {
@@ -60,6 +80,23 @@ abstract class Expr {
         final Expr callee;
         final Token paren;
         final List<Expr> arguments;
+        MethodCache cache = null;
+    }
+    static class Dict extends Expr {
+        Dict(Token brace, List<Expr> keys, List<Expr> values) {
+            this.brace = brace;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_dict_expr(this);
+        }
+
+        final Token brace;
+        final List<Expr> keys;
+        final List<Expr> values;
     }
     static class Get extends Expr {
         Get(Expr object, Token name) {
@@ -74,6 +111,41 @@ abstract class Expr {
 
         final Expr object;
         final Token name;
+        int slot = -1;
+    }
+    static class Index extends Expr {
+        Index(Expr object, Token bracket, Expr index) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_index_expr(this);
+        }
+
+        final Expr object;
+        final Token bracket;
+        final Expr index;
+    }
+    static class IndexSet extends Expr {
+        IndexSet(Expr object, Token bracket, Expr index, Expr value) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_indexset_expr(this);
+        }
+
+        final Expr object;
+        final Token bracket;
+        final Expr index;
+        final Expr value;
     }
     static class Set extends Expr {
         Set(Expr object, Token name, Expr value) {
@@ -90,6 +162,7 @@ abstract class Expr {
         final Expr object;
         final Token name;
         final Expr value;
+        int slot = -1;
     }
     static class Super extends Expr {
         Super(Token keyword, Token method) {
@@ -104,6 +177,8 @@ abstract class Expr {
 
         final Token keyword;
         final Token method;
+        int depth = -1;
+        MethodCache cache = null;
     }
     static class This extends Expr {
         This(Token keyword) {
@@ -116,6 +191,7 @@ abstract class Expr {
         }
 
         final Token keyword;
+        int depth = -1;
     }
     static class Grouping extends Expr {
         Grouping(Expr expression) {
@@ -182,6 +258,9 @@ abstract class Expr {
         }
 
         final Token name;
+        int depth = -1;
+        int slot = -1;
+        boolean lazy = false;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,35 @@
+// A for loop that counts a local up or down by a fixed step, found by the
+// loop optimizer:
+//
+//     for (var i = 0; i < n; i = i + 1) ...
+//
+// The interpreter keeps the counter in a double and compares it to the
+// bound read once, instead of evaluating the condition and increment as
+// expressions. The local is still updated every iteration for the body,
+// as a whole number where the counter is one.
+class InductionVariable {
+    final int slot;
+    final TokenType comparison;
+    final Expr bound;
+    final double step;
+
+    InductionVariable(int slot, TokenType comparison, Expr bound, double step) {
+        this.slot = slot;
+        this.comparison = comparison;
+        this.bound = bound;
+        this.step = step;
+    }
+
+    boolean test(double counter, double limit) {
+        switch (comparison) {
+            case LESSER:
+                return counter < limit;
+            case LESSER_EQUAL:
+                return counter <= limit;
+            case GREATER:
+                return counter > limit;
+            default:
+                return counter >= limit;
+        }
+    }
+}
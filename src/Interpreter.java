@@ -4,19 +4,50 @@ import java.util.HashMap;
 import java.util.Map;
 
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment(null);
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    final Environment globals;
+    private Environment environment;
+    private Jump pending_jump = Jump.NONE;
+    final CallStack call_stack;
+    private final ClassHierarchy hierarchy;
+    private final ReigaiGenerator generator; // whose body this runs, null on the main thread
+    Profile profile = null; // set while recording with --profile-out
+    Debugger debugger = null; // set when breakpoints were asked for
+
+    // Set by break and continue, and checked by blocks and loops as they
+    // unwind, so leaving a loop early does not need an exception.
+    private enum Jump {
+        NONE,
+        BREAK,
+        CONTINUE,
+    }
 
     Interpreter() {
-        // Native Functions
-        globals.define("clock", NativeFunctions.Clock);
-        globals.define("len", NativeFunctions.Len);
-        globals.define("round", NativeFunctions.Round);
-        globals.define("abs", NativeFunctions.Abs);
-        globals.define("floor", NativeFunctions.Floor);
-        globals.define("ceil", NativeFunctions.Ceil);
-        globals.define("pow", NativeFunctions.Pow);
+        this(CallStack.DEFAULT_MAX_DEPTH);
+    }
+
+    Interpreter(int max_call_depth) {
+        globals = new Environment(null);
+        environment = globals;
+        call_stack = new CallStack(max_call_depth);
+        hierarchy = new ClassHierarchy();
+        generator = null;
+
+        // Native Functions, at the symbol ids interned for them first
+        for (int i = 0; i < NativeFunctions.NAMES.length; i++) {
+            globals.define_global(i, NativeFunctions.ALL[i]);
+        }
+    }
+
+    // Runs the body of a generator on its thread, sharing everything but
+    // the call stack with the interpreter that called it
+    Interpreter(Interpreter caller, ReigaiGenerator generator) {
+        globals = caller.globals;
+        environment = globals;
+        call_stack = new CallStack(caller.call_stack.max_depth());
+        hierarchy = caller.hierarchy;
+        this.generator = generator;
+        profile = caller.profile;
+        debugger = caller.debugger;
     }
 
     void interpret(List<Stmt> statements) {
@@ -26,6 +57,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         } catch (RuntimeError error) {
             Reigai.runtime_error(error);
+        } catch (StackOverflowError error) {
+            // the JVM stack ran out before the call depth limit did, most
+            // likely inside one huge expression, report it at the last call
+            Token site = call_stack.depth() > 0 ? call_stack.site(call_stack.depth() - 1) : null;
+            Reigai.runtime_error(new RuntimeError(site, "Stack overflow."));
+        } finally {
+            call_stack.clear();
+            environment = globals;
+            pending_jump = Jump.NONE;
         }
     }
 
@@ -52,15 +92,15 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visit_variable_expr(Expr.Variable expr) {
-        return lookup_variable(expr.name, expr);
-    }
-
-    private Object lookup_variable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.get_at(distance, name.lexeme);
+        if (expr.depth >= 0) {
+            Object value = environment.get_at(expr.depth, expr.slot);
+            if (expr.lazy && value instanceof LazyValue) {
+                value = ((LazyValue) value).force();
+                environment.assign_at(expr.depth, expr.slot, value);
+            }
+            return value;
         } else {
-            return globals.get(name);
+            return globals.get(expr.slot, expr.name);
         }
     }
 
@@ -68,11 +108,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Object visit_assign_expr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
 
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assign_at(distance, expr.name, value);
+        if (expr.depth >= 0) {
+            environment.assign_at(expr.depth, expr.slot, value);
         } else {
-            globals.assign(expr.name, value);
+            globals.assign(expr.slot, expr.name, value);
         }
         return value;
     }
@@ -89,7 +128,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         switch (expr.operator.type) {
             case MINUS:
                 check_number_operand(expr.operator, right);
-                return -(double) right;
+                return Numbers.negate(right);
             case BANG:
                 return !is_truthy(right);
             default: // Unreachable
@@ -98,13 +137,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     private void check_number_operand(Token operator, Object operand) {
-        if (operand instanceof Double)
+        if (Numbers.is_number(operand))
             return;
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
     private void check_number_operands(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double)
+        if (Numbers.is_number(left) && Numbers.is_number(right))
             return;
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
@@ -127,16 +166,24 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             // COMPARISON
             case GREATER:
                 check_number_operands(expr.operator, left, right);
-                return (Double) left > (Double) right;
+                if (left instanceof Long && right instanceof Long)
+                    return (long) (Long) left > (Long) right;
+                return Numbers.as_double(left) > Numbers.as_double(right);
             case GREATER_EQUAL:
                 check_number_operands(expr.operator, left, right);
-                return (Double) left >= (Double) right;
+                if (left instanceof Long && right instanceof Long)
+                    return (long) (Long) left >= (Long) right;
+                return Numbers.as_double(left) >= Numbers.as_double(right);
             case LESSER:
                 check_number_operands(expr.operator, left, right);
-                return (Double) left < (Double) right;
+                if (left instanceof Long && right instanceof Long)
+                    return (long) (Long) left < (Long) right;
+                return Numbers.as_double(left) < Numbers.as_double(right);
             case LESSER_EQUAL:
                 check_number_operands(expr.operator, left, right);
-                return (Double) left <= (Double) right;
+                if (left instanceof Long && right instanceof Long)
+                    return (long) (Long) left <= (Long) right;
+                return Numbers.as_double(left) <= Numbers.as_double(right);
 
             // EQUALITY
             case EQUAL_EQUAL:
@@ -147,21 +194,21 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             // ARITHMETIC
             case MINUS:
                 check_number_operands(expr.operator, left, right);
-                return (double) left - (double) right;
+                return Numbers.subtract(left, right);
             case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
+                if (Numbers.is_number(left) && Numbers.is_number(right)) {
+                    return Numbers.add(left, right);
                 }
-                return left.toString() + right.toString();
+                return Rope.concat(left, right);
             case SLASH:
                 check_number_operands(expr.operator, left, right);
-                return (double) left / (double) right;
+                return Numbers.divide(left, right);
             case STAR:
                 check_number_operands(expr.operator, left, right);
-                return (double) left * (double) right;
+                return Numbers.multiply(left, right);
             case MOD:
                 check_number_operands(expr.operator, left, right);
-                return (double) left % (double) right;
+                return Numbers.modulo(left, right);
             default: // Unreachable
                 return null;
         }
@@ -169,8 +216,26 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visit_call_expr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+        // Methods are looked up through the call site's cache and called on
+        // the instance directly, without binding them first
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get) expr.callee;
+            Object object = evaluate(get.object);
+            if (object instanceof ReigaiInstance && !((ReigaiInstance) object).has_field(get.name.lexeme)) {
+                ReigaiInstance instance = (ReigaiInstance) object;
+                return call(expr, method(expr, instance.cl, get.name), instance);
+            }
+            return call(expr, property(object, get.name), null);
+        }
+        if (expr.callee instanceof Expr.Super) {
+            Expr.Super callee = (Expr.Super) expr.callee;
+            ReigaiFunction method = super_method(callee);
+            return call(expr, method, (ReigaiInstance) environment.get_at(callee.depth - 1, 0));
+        }
+        return call(expr, evaluate(expr.callee), null);
+    }
 
+    private Object call(Expr.Call expr, Object callee, ReigaiInstance instance) {
         List<Object> arguments = new ArrayList<>();
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
@@ -181,26 +246,168 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         ReigaiCallable function = (ReigaiCallable) callee;
+        if (profile != null)
+            profile.call(expr, callee);
         if (arguments.size() != function.arity()) {
             throw new RuntimeError(expr.paren,
                     "Expected " + function.arity() + " arguments, found " + arguments.size() + ".");
         }
-        return function.call(this, arguments);
+
+        return call_function(expr.paren, function, instance, arguments);
+    }
+
+    // For calls made from outside a call expression (iterator methods, native
+    // callbacks), so they count toward the depth limit and show up in traces
+    Object call_function(Token site, ReigaiCallable function, List<Object> arguments) {
+        return call_function(site, function, null, arguments);
+    }
+
+    private Object call_function(Token site, ReigaiCallable function, ReigaiInstance instance,
+            List<Object> arguments) {
+        call_stack.push(site, function);
+        try {
+            if (instance != null)
+                return ((ReigaiFunction) function).call_method(this, instance, arguments);
+            return function.call(this, arguments);
+        } catch (RuntimeError error) {
+            error.called_from(function, site);
+            throw error;
+        } finally {
+            call_stack.pop();
+        }
+    }
+
+    private ReigaiFunction method(Expr.Call site, ReigaiClass cl, Token name) {
+        MethodCache cache = site.cache;
+        if (cache != null && cache.matches(cl, hierarchy.version()))
+            return cache.method;
+
+        ReigaiFunction method = cl.find_method(name.lexeme);
+        if (method == null) {
+            throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+        }
+        site.cache = hierarchy.cache(cl, name.lexeme, method);
+        return method;
+    }
+
+    private ReigaiFunction super_method(Expr.Super expr) {
+        // 'super' and 'this' are alone in their scopes, so both are in slot 0
+        ReigaiClass superclass = (ReigaiClass) environment.get_at(expr.depth, 0);
+        MethodCache cache = expr.cache;
+        if (cache != null && cache.matches(superclass, hierarchy.version()))
+            return cache.method;
+
+        ReigaiFunction method = superclass.find_method(expr.method.lexeme);
+        if (method == null) {
+            throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
+        }
+        expr.cache = new MethodCache(superclass, method, false, hierarchy.version());
+        return method;
+    }
+
+    @Override
+    public Object visit_array_expr(Expr.Array expr) {
+        ReigaiList list = new ReigaiList(expr.elements.size());
+        for (Expr element : expr.elements) {
+            list.add(evaluate(element));
+        }
+        return list;
+    }
+
+    @Override
+    public Object visit_dict_expr(Expr.Dict expr) {
+        ReigaiMap map = new ReigaiMap();
+        for (int i = 0; i < expr.keys.size(); i++) {
+            Object key = evaluate(expr.keys.get(i));
+            map.put(map_key(expr.brace, key), evaluate(expr.values.get(i)));
+        }
+        return map;
+    }
+
+    @Override
+    public Object visit_index_expr(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        if (object instanceof ReigaiMap)
+            return ((ReigaiMap) object).get(map_key(expr.bracket, index));
+        if (object instanceof ReigaiBuffer) {
+            ReigaiBuffer buffer = (ReigaiBuffer) object;
+            return Numbers.of(buffer.get(element_index(expr.bracket, "Buffer", buffer.size(), index)));
+        }
+        ReigaiList list = list(expr.bracket, object);
+        return list.get(element_index(expr.bracket, "List", list.size(), index));
+    }
+
+    @Override
+    public Object visit_indexset_expr(Expr.IndexSet expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        Object value = evaluate(expr.value);
+        if (object instanceof ReigaiMap) {
+            ((ReigaiMap) object).put(map_key(expr.bracket, index), value);
+            return value;
+        }
+        if (object instanceof ReigaiBuffer) {
+            ReigaiBuffer buffer = (ReigaiBuffer) object;
+            int element = element_index(expr.bracket, "Buffer", buffer.size(), index);
+            if (!Numbers.is_number(value))
+                throw new RuntimeError(expr.bracket, "Buffers can only hold numbers.");
+            buffer.set(element, Numbers.as_double(value));
+            return value;
+        }
+        ReigaiList list = list(expr.bracket, object);
+        list.set(element_index(expr.bracket, "List", list.size(), index), value);
+        return value;
+    }
+
+    private ReigaiList list(Token bracket, Object object) {
+        if (object instanceof ReigaiList)
+            return (ReigaiList) object;
+        throw new RuntimeError(bracket, "Only lists, maps and buffers can be indexed.");
+    }
+
+    private Object map_key(Token token, Object key) {
+        if (key == null)
+            throw new RuntimeError(token, "Map keys can't be nil.");
+        return key;
+    }
+
+    private int element_index(Token bracket, String kind, int size, Object index) {
+        if (!(index instanceof Long))
+            throw new RuntimeError(bracket, kind + " index must be a whole number.");
+        long element = (Long) index;
+        if (element < 0 || element >= size)
+            throw new RuntimeError(bracket, kind + " index " + index + " out of range for length " + size + ".");
+        return (int) element;
     }
 
     @Override
     public Object visit_get_expr(Expr.Get expr) {
         Object object = evaluate(expr.object);
+        if (object instanceof ReigaiStructInstance)
+            return ((ReigaiStructInstance) object).get(expr);
+        return property(object, expr.name);
+    }
+
+    private Object property(Object object, Token name) {
         if (object instanceof ReigaiInstance) {
-            return ((ReigaiInstance) object).get(expr.name);
+            return ((ReigaiInstance) object).get(name);
+        }
+        if (object instanceof ReigaiStructInstance) {
+            return ((ReigaiStructInstance) object).get(name);
         }
-        throw new RuntimeError(expr.name, "Only instances have properties.");
+        throw new RuntimeError(name, "Only instances have properties.");
     }
 
     @Override
     public Object visit_set_expr(Expr.Set expr) {
         Object object = evaluate(expr.object);
 
+        if (object instanceof ReigaiStructInstance) {
+            Object value = evaluate(expr.value);
+            ((ReigaiStructInstance) object).set(expr, value);
+            return value;
+        }
         if (!(object instanceof ReigaiInstance)) {
             throw new RuntimeError(expr.name, "Only instances have fields.");
         }
@@ -212,21 +419,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visit_super_expr(Expr.Super expr) {
-        int distance = locals.get(expr);
-        ReigaiClass superclass = (ReigaiClass) environment.get_at(distance, "super");
-        ReigaiInstance object = (ReigaiInstance) environment.get_at(distance - 1, "this");
-        ReigaiFunction method = superclass.find_method(expr.method.lexeme);
-
-        if (method == null) {
-            throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
-        }
-
-        return method.bind(object);
+        ReigaiFunction method = super_method(expr);
+        return method.bind((ReigaiInstance) environment.get_at(expr.depth - 1, 0));
     }
 
     @Override
     public Object visit_this_expr(Expr.This expr) {
-        return lookup_variable(expr.keyword, expr);
+        return environment.get_at(expr.depth, 0);
     }
 
     private boolean is_equal(Object a, Object b) {
@@ -234,20 +433,30 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             return true;
         if (a == null)
             return false;
+        if (a instanceof StringSlice)
+            return StringSlice.same_text((StringSlice) a, b);
+        if (b instanceof StringSlice)
+            return StringSlice.same_text((StringSlice) b, a);
 
-        return a.equals(b);
+        return Rope.flat(a).equals(Rope.flat(b));
     }
 
     private Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    Object evaluate_in(Expr expr, Environment environment) { // for a LazyValue
+        Environment previous = this.environment;
+        try {
+            this.environment = environment;
+            return evaluate(expr);
+        } finally {
+            this.environment = previous;
+        }
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    private void execute(Stmt stmt) {
+        stmt.accept(this);
     }
 
     public void execute_block(List<Stmt> statements, Environment environment) {
@@ -256,6 +465,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             this.environment = environment; // "Go" up a scope
             for (Stmt statement : statements) {
                 execute(statement);
+                if (pending_jump != Jump.NONE)
+                    break;
             }
         } finally {
             this.environment = previous;
@@ -268,6 +479,49 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit_break_stmt(Stmt.Break stmt) {
+        pending_jump = Jump.BREAK;
+        return null;
+    }
+
+    @Override
+    public Void visit_continue_stmt(Stmt.Continue stmt) {
+        pending_jump = Jump.CONTINUE;
+        return null;
+    }
+
+    @Override
+    public Void visit_breakpoint_stmt(Stmt.Breakpoint stmt) {
+        debugger.pause(stmt);
+        execute(stmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visit_try_stmt(Stmt.Try stmt) {
+        try {
+            execute_block(stmt.body, new Environment(environment));
+        } catch (RuntimeError error) {
+            // execute_block and call() have already put the environment and
+            // the call stack back the way they were at the 'try'
+            Environment handler = new Environment(environment);
+            handler.define(stmt.name.lexeme, error.getMessage());
+            execute_block(stmt.handler, handler);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit_struct_stmt(Stmt.Struct stmt) {
+        String[] fields = new String[stmt.fields.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = stmt.fields.get(i).lexeme;
+        }
+        environment.define(stmt.name.lexeme, new ReigaiStruct(stmt.name.lexeme, fields));
+        return null;
+    }
+
     @Override
     public Void visit_class_stmt(Stmt.Class stmt) {
         Object superclass = null;
@@ -278,8 +532,6 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         }
 
-        environment.define(stmt.name.lexeme, null);
-
         if (stmt.superclass != null) {
             environment = new Environment(environment);
             environment.define("super", superclass);
@@ -292,12 +544,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         ReigaiClass cl = new ReigaiClass(stmt.name.lexeme, (ReigaiClass) superclass, methods);
+        hierarchy.add(cl);
 
         if (superclass != null) {
             environment = environment.enclosing;
         }
 
-        environment.assign(stmt.name, cl);
+        environment.define(stmt.name.lexeme, cl);
         return null;
     }
 
@@ -316,7 +569,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visit_if_stmt(Stmt.If stmt) {
-        if (is_truthy(evaluate(stmt.condition))) {
+        boolean taken = is_truthy(evaluate(stmt.condition));
+        if (profile != null)
+            profile.branch(stmt, taken);
+
+        if (taken) {
             execute(stmt.then_branch);
         } else if (stmt.else_branch != null) {
             execute(stmt.else_branch);
@@ -324,6 +581,17 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit_match_stmt(Stmt.Match stmt) {
+        int arm = stmt.table.lookup(evaluate(stmt.subject));
+        if (arm >= 0) {
+            execute(stmt.arms.get(arm));
+        } else if (stmt.else_branch != null) {
+            execute(stmt.else_branch);
+        }
+        return null;
+    }
+
     @Override
     public Void visit_print_stmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
@@ -350,19 +618,167 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit_yield_stmt(Stmt.Yield stmt) {
+        Object value = null;
+        if (stmt.value != null)
+            value = evaluate(stmt.value);
+        generator.yield_value(value);
+        return null;
+    }
+
+    @Override
+    public Void visit_forin_stmt(Stmt.ForIn stmt) {
+        Object iterable = evaluate(stmt.iterable);
+        Environment scope = new Environment(environment);
+        scope.define(stmt.name.lexeme, null);
+
+        Environment previous = environment;
+        environment = scope;
+        try {
+            if (iterable instanceof ReigaiRange) {
+                run_range(stmt, (ReigaiRange) iterable);
+                return null;
+            }
+            ReigaiIterator iterator = iterator(stmt, iterable);
+            try {
+                while (iterator.has_next()) {
+                    scope.assign_at(0, 0, iterator.next());
+                    execute(stmt.body);
+                    if (pending_jump != Jump.NONE) {
+                        Jump jump = pending_jump;
+                        pending_jump = Jump.NONE;
+                        if (jump == Jump.BREAK)
+                            break;
+                    }
+                }
+            } finally {
+                // left early (break, return, an error): its thread isn't needed any more
+                if (iterator instanceof ReigaiGenerator)
+                    ((ReigaiGenerator) iterator).stop();
+            }
+        } finally {
+            environment = previous;
+        }
+        return null;
+    }
+
+    // Counts in a double instead of going through an iterator, like
+    // run_counted()
+    private void run_range(Stmt.ForIn stmt, ReigaiRange range) {
+        for (double counter = range.start; range.contains(counter); counter += range.step) {
+            environment.assign_at(0, 0, Numbers.of(counter));
+            execute(stmt.body);
+            if (pending_jump != Jump.NONE) {
+                Jump jump = pending_jump;
+                pending_jump = Jump.NONE;
+                if (jump == Jump.BREAK)
+                    break;
+            }
+        }
+    }
+
+    private ReigaiIterator iterator(Stmt.ForIn stmt, Object iterable) {
+        if (iterable instanceof ReigaiIterator) // generators and files
+            return (ReigaiIterator) iterable;
+        if (iterable instanceof ReigaiList)
+            return ((ReigaiList) iterable).iterator();
+        if (iterable instanceof ReigaiMap)
+            return ((ReigaiMap) iterable).keys().iterator();
+        if (iterable instanceof ReigaiBuffer)
+            return ((ReigaiBuffer) iterable).iterator();
+        if (iterable instanceof String || iterable instanceof Rope || iterable instanceof StringSlice)
+            return ReigaiIterator.characters(iterable.toString());
+        if (iterable instanceof ReigaiInstance)
+            return instance_iterator(stmt, (ReigaiInstance) iterable);
+        throw new RuntimeError(stmt.name, "Can only iterate over ranges, strings, lists, maps, buffers and iterators.");
+    }
+
+    // An object of a class with has_next() and next() methods
+    private ReigaiIterator instance_iterator(Stmt.ForIn stmt, ReigaiInstance instance) {
+        ReigaiFunction has_next = instance.cl.find_method("has_next");
+        ReigaiFunction next = instance.cl.find_method("next");
+        if (has_next == null || next == null || has_next.arity() != 0 || next.arity() != 0)
+            throw new RuntimeError(stmt.name, "Iterators need has_next() and next() methods without parameters.");
+
+        List<Object> arguments = new ArrayList<>();
+        return new ReigaiIterator() {
+            @Override
+            public boolean has_next() {
+                return is_truthy(call_function(stmt.keyword, has_next, instance, arguments));
+            }
+
+            @Override
+            public Object next() {
+                return call_function(stmt.keyword, next, instance, arguments);
+            }
+        };
+    }
+
+    @Override
+    public Void visit_lazy_stmt(Stmt.Lazy stmt) {
+        environment.define_lazy(stmt.name.lexeme, new LazyValue(stmt, environment, this));
+        return null;
+    }
+
     @Override
     public Void visit_while_stmt(Stmt.While stmt) {
+        if (stmt.induction != null && run_counted(stmt, stmt.induction))
+            return null;
+
         while (is_truthy(evaluate(stmt.condition))) {
             execute(stmt.body);
+            if (pending_jump != Jump.NONE) {
+                Jump jump = pending_jump;
+                pending_jump = Jump.NONE;
+                if (jump == Jump.BREAK)
+                    break;
+            }
+            if (stmt.increment != null)
+                evaluate(stmt.increment);
         }
         return null;
     }
 
-    private String stringify(Object object) {
+    // Evaluates an expression typed at a breakpoint, in the paused scope
+    String inspect(Expr expr) {
+        try {
+            return stringify(evaluate(expr));
+        } catch (RuntimeError error) {
+            return error.getMessage();
+        }
+    }
+
+    // False, before running anything, if the counter or the bound turn out
+    // not to be numbers; the loop then runs the general way
+    private boolean run_counted(Stmt.While stmt, InductionVariable induction) {
+        Environment scope = environment;
+        Object start = scope.get_at(0, induction.slot);
+        Object bound = evaluate(induction.bound);
+        if (!Numbers.is_number(start) || !Numbers.is_number(bound))
+            return false;
+
+        double counter = Numbers.as_double(start);
+        double limit = Numbers.as_double(bound);
+        while (induction.test(counter, limit)) {
+            execute(stmt.body);
+            if (pending_jump != Jump.NONE) {
+                Jump jump = pending_jump;
+                pending_jump = Jump.NONE;
+                if (jump == Jump.BREAK)
+                    break;
+            }
+            counter += induction.step;
+            scope.assign_at(0, induction.slot, Numbers.of(counter));
+        }
+        return true;
+    }
+
+    static String stringify(Object object) {
         if (object == null)
             return "nil";
-        if (object instanceof Double) {
-            String text = object.toString();
+        if (Numbers.is_number(object)) {
+            String text = Numbers.text(object);
             if (text.endsWith(".0")) {
                 text = text.substring(0, text.length() - 2);
             }
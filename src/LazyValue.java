@@ -0,0 +1,33 @@
+// The value of a 'lazy var' until it is first read: its initializer and the
+// scope it was declared in. Reading it runs the initializer there, and the
+// result takes its place in the variable's slot.
+class LazyValue {
+    private final Stmt.Lazy declaration;
+    private final Environment closure;
+    private final Interpreter interpreter;
+    private boolean running = false;
+
+    LazyValue(Stmt.Lazy declaration, Environment closure, Interpreter interpreter) {
+        this.declaration = declaration;
+        this.closure = closure;
+        this.interpreter = interpreter;
+    }
+
+    Object force() {
+        if (running) {
+            throw new RuntimeError(declaration.name,
+                    "Lazy variable '" + declaration.name.lexeme + "' read while it is being computed.");
+        }
+        running = true;
+        try {
+            return interpreter.evaluate_in(declaration.initializer, closure);
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<lazy " + declaration.name.lexeme + ">";
+    }
+}
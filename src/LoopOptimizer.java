@@ -0,0 +1,406 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Folds constant arithmetic, and hoists the parts of a loop condition that
+// can't change while the loop runs (len(s), n - 1, ...) into locals
+// computed once just before the loop:
+//
+//     while (i < len(s)) ...   ->   var loop#0 = len(s); while (i < loop#0) ...
+//
+// The condition is the first thing a loop evaluates, so this can only be
+// noticed if something evaluated before those parts could fail or have an
+// effect, and hoisting stops at the first such expression. Nothing is
+// hoisted out of bodies, which may run zero times.
+class LoopOptimizer extends AstTransformer {
+    private static final Set<String> PURE_NATIVES = new HashSet<>(
+            Arrays.asList("len", "round", "abs", "floor", "ceil", "pow"));
+    private static final Object NOT_CONSTANT = new Object();
+
+    private final Optimizer.Names names;
+    private final Set<Stmt> wrappers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int hoisted_count = 0;
+
+    // state while hoisting from one condition
+    private List<Stmt> hoisted;
+    private boolean open; // nothing evaluated so far can fail or have an effect
+
+    LoopOptimizer(List<Stmt> program) {
+        names = new Optimizer.Names(program);
+    }
+
+    List<Stmt> run(List<Stmt> program) {
+        // a top-level loop keeps its block, or the hoisted values would be globals
+        List<Stmt> result = new ArrayList<>(program.size());
+        for (Stmt stmt : program) {
+            result.add(transform(stmt));
+        }
+        return result;
+    }
+
+    @Override
+    List<Stmt> transform(List<Stmt> statements) {
+        statements = super.transform(statements);
+
+        List<Stmt> result = null;
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            if (wrappers.contains(stmt) && result == null) {
+                result = new ArrayList<>(statements.subList(0, i));
+            }
+            if (result == null)
+                continue;
+            if (wrappers.contains(stmt)) { // the hoisted values go in the block around the loop
+                result.addAll(((Stmt.Block) stmt).statements);
+            } else {
+                result.add(stmt);
+            }
+        }
+        return result == null ? statements : result;
+    }
+
+    @Override
+    public Stmt visit_while_stmt(Stmt.While stmt) {
+        Stmt.While loop = (Stmt.While) super.visit_while_stmt(stmt);
+
+        hoisted = new ArrayList<>();
+        open = true;
+        Expr condition = hoist(loop.condition);
+        if (hoisted.isEmpty())
+            return loop;
+
+        List<Stmt> statements = hoisted;
+        statements.add(new Stmt.While(condition, loop.body, loop.increment));
+        Stmt.Block block = new Stmt.Block(statements);
+        wrappers.add(block);
+        return block;
+    }
+
+    // Walks the condition in evaluation order
+    private Expr hoist(Expr expr) {
+        if (!open)
+            return expr;
+
+        if (!(expr instanceof Expr.Literal) && !(expr instanceof Expr.Variable) && is_invariant(expr)) {
+            // only ever read as a local, so never shows up in an error
+            Token name = new Token(TokenType.IDENTIFIER, "loop#" + hoisted_count++, null, 0);
+            hoisted.add(new Stmt.Var(name, expr));
+            return new Expr.Variable(name);
+        }
+
+        if (expr instanceof Expr.Grouping) {
+            Expr inner = hoist(((Expr.Grouping) expr).expression);
+            return inner == ((Expr.Grouping) expr).expression ? expr : new Expr.Grouping(inner);
+        }
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            Expr right = hoist(unary.right);
+            if (unary.operator.type == TokenType.MINUS)
+                open = false; // fails on anything but a number
+            return right == unary.right ? expr : new Expr.Unary(unary.operator, right);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            Expr left = hoist(binary.left);
+            Expr right = hoist(binary.right);
+            if (!is_equality(binary.operator.type))
+                open = false;
+            if (left == binary.left && right == binary.right)
+                return expr;
+            return new Expr.Binary(left, binary.operator, right);
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical) expr;
+            Expr left = hoist(logical.left);
+            open = open && is_safe(logical.right); // right side may not run at all
+            return left == logical.left ? expr : new Expr.Logical(left, logical.operator, logical.right);
+        }
+        if (expr instanceof Expr.Variable) {
+            if (((Expr.Variable) expr).depth < 0)
+                open = false; // a global may not be defined
+            return expr;
+        }
+        if (!(expr instanceof Expr.Literal))
+            open = false;
+        return expr;
+    }
+
+    private static boolean is_equality(TokenType type) {
+        return type == TokenType.EQUAL_EQUAL || type == TokenType.BANG_EQUAL;
+    }
+
+    // Can't fail and has no effect
+    private static boolean is_safe(Expr expr) {
+        if (expr instanceof Expr.Literal)
+            return true;
+        if (expr instanceof Expr.Variable)
+            return ((Expr.Variable) expr).depth >= 0;
+        if (expr instanceof Expr.Grouping)
+            return is_safe(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary)
+            return ((Expr.Unary) expr).operator.type == TokenType.BANG && is_safe(((Expr.Unary) expr).right);
+        if (expr instanceof Expr.Binary)
+            return is_equality(((Expr.Binary) expr).operator.type) && is_safe(((Expr.Binary) expr).left)
+                    && is_safe(((Expr.Binary) expr).right);
+        if (expr instanceof Expr.Logical)
+            return is_safe(((Expr.Logical) expr).left) && is_safe(((Expr.Logical) expr).right);
+        return false;
+    }
+
+    // Gives the same value every time while the loop runs
+    private boolean is_invariant(Expr expr) {
+        if (expr instanceof Expr.Literal)
+            return true;
+        if (expr instanceof Expr.Variable)
+            return !names.is_assigned(((Expr.Variable) expr).name.lexeme);
+        if (expr instanceof Expr.Grouping)
+            return is_invariant(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary)
+            return is_invariant(((Expr.Unary) expr).right);
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            if (binary.operator.type == TokenType.PLUS && names.makes_containers()) // may print a container
+                return false;
+            return is_invariant(binary.left) && is_invariant(binary.right);
+        }
+        if (expr instanceof Expr.Logical)
+            return is_invariant(((Expr.Logical) expr).left) && is_invariant(((Expr.Logical) expr).right);
+        if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call) expr;
+            if (!(call.callee instanceof Expr.Variable))
+                return false;
+            Expr.Variable callee = (Expr.Variable) call.callee;
+            String name = callee.name.lexeme;
+            if (callee.depth >= 0 || !PURE_NATIVES.contains(name) || !names.is_native(name))
+                return false;
+            if (name.equals("len") && names.makes_containers())
+                return false;
+            for (Expr argument : call.arguments) {
+                if (!is_invariant(argument))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Expr visit_binary_expr(Expr.Binary expr) {
+        Expr.Binary binary = (Expr.Binary) super.visit_binary_expr(expr);
+        if (!(binary.left instanceof Expr.Literal) || !(binary.right instanceof Expr.Literal))
+            return binary;
+
+        Object value = fold(binary.operator.type, ((Expr.Literal) binary.left).value,
+                ((Expr.Literal) binary.right).value);
+        return value == NOT_CONSTANT ? binary : new Expr.Literal(value);
+    }
+
+    @Override
+    public Expr visit_unary_expr(Expr.Unary expr) {
+        Expr.Unary unary = (Expr.Unary) super.visit_unary_expr(expr);
+        if (!(unary.right instanceof Expr.Literal))
+            return unary;
+
+        Object value = ((Expr.Literal) unary.right).value;
+        if (unary.operator.type == TokenType.BANG)
+            return new Expr.Literal(!(value == null ? false : value instanceof Boolean ? (Boolean) value : true));
+        if (Numbers.is_number(value))
+            return new Expr.Literal(Numbers.negate(value));
+        return unary;
+    }
+
+    @Override
+    public Expr visit_grouping_expr(Expr.Grouping expr) {
+        Expr grouping = super.visit_grouping_expr(expr);
+        Expr inner = ((Expr.Grouping) grouping).expression;
+        return inner instanceof Expr.Literal ? inner : grouping;
+    }
+
+    // The operators exactly as the interpreter applies them, for the
+    // operand types where they can't fail
+    private static Object fold(TokenType operator, Object left, Object right) {
+        if (operator == TokenType.EQUAL_EQUAL)
+            return Objects.equals(left, right);
+        if (operator == TokenType.BANG_EQUAL)
+            return !Objects.equals(left, right);
+
+        if (Numbers.is_number(left) && Numbers.is_number(right)) {
+            double a = Numbers.as_double(left);
+            double b = Numbers.as_double(right);
+            switch (operator) {
+                case GREATER:
+                    return a > b;
+                case GREATER_EQUAL:
+                    return a >= b;
+                case LESSER:
+                    return a < b;
+                case LESSER_EQUAL:
+                    return a <= b;
+                case MINUS:
+                    return Numbers.subtract(left, right);
+                case PLUS:
+                    return Numbers.add(left, right);
+                case SLASH:
+                    return Numbers.divide(left, right);
+                case STAR:
+                    return Numbers.multiply(left, right);
+                case MOD:
+                    return Numbers.modulo(left, right);
+                default:
+                    return NOT_CONSTANT;
+            }
+        }
+        if (operator == TokenType.PLUS && left instanceof String && right instanceof String)
+            return (String) left + right;
+        return NOT_CONSTANT;
+    }
+
+    // Marks for loops that count a local by a fixed step up or down to a
+    // bound that doesn't change, so the interpreter can run them on a
+    // primitive counter (see InductionVariable). Runs on the final tree,
+    // since it records slots.
+    static void find_counted_loops(List<Stmt> program) {
+        new CountedLoops(new Optimizer.Names(program)).transform(program);
+    }
+
+    private static class CountedLoops extends AstTransformer {
+        private final Optimizer.Names names;
+
+        CountedLoops(Optimizer.Names names) {
+            this.names = names;
+        }
+
+        @Override
+        List<Stmt> transform(List<Stmt> statements) {
+            for (int i = 0; i < statements.size(); i++) {
+                if (statements.get(i) instanceof Stmt.While) {
+                    Stmt.While loop = (Stmt.While) statements.get(i);
+                    loop.induction = induction_variable(loop, statements.subList(0, i));
+                }
+            }
+            return super.transform(statements);
+        }
+
+        // for (var i = a; i < bound; i = i + step), with i declared in the
+        // same block and only assigned by the increment
+        private InductionVariable induction_variable(Stmt.While loop, List<Stmt> before) {
+            if (!(loop.increment instanceof Expr.Assign) || !(loop.condition instanceof Expr.Binary))
+                return null;
+            Expr.Assign increment = (Expr.Assign) loop.increment;
+            if (increment.depth != 0 || !(increment.value instanceof Expr.Binary))
+                return null;
+            String name = increment.name.lexeme;
+
+            Expr.Binary next = (Expr.Binary) increment.value;
+            if (!is_counter(next.left, name, increment.slot) || !(next.right instanceof Expr.Literal)
+                    || !Numbers.is_number(((Expr.Literal) next.right).value))
+                return null;
+            double step = Numbers.as_double(((Expr.Literal) next.right).value);
+            if (next.operator.type == TokenType.MINUS) {
+                step = -step;
+            } else if (next.operator.type != TokenType.PLUS) {
+                return null;
+            }
+
+            Expr.Binary test = (Expr.Binary) loop.condition;
+            switch (test.operator.type) {
+                case LESSER:
+                case LESSER_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                    break;
+                default:
+                    return null;
+            }
+            if (!is_counter(test.left, name, increment.slot))
+                return null;
+            boolean fixed_bound = test.right instanceof Expr.Literal || (test.right instanceof Expr.Variable
+                    && !names.is_assigned(((Expr.Variable) test.right).name.lexeme));
+            if (!fixed_bound)
+                return null;
+
+            // nothing between the declaration and the loop may capture it, or
+            // defer an assignment to it that the body could force
+            boolean declared = false;
+            for (Stmt stmt : before) {
+                if (stmt instanceof Stmt.Var && ((Stmt.Var) stmt).name.lexeme.equals(name)) {
+                    declared = true;
+                } else if (declared && (stmt instanceof Stmt.Function || stmt instanceof Stmt.Class)) {
+                    return null;
+                } else if (declared) {
+                    DeferredAssignments deferred = new DeferredAssignments(name);
+                    deferred.transform(stmt);
+                    if (deferred.found)
+                        return null;
+                }
+            }
+            if (!declared)
+                return null;
+
+            Assignments assignments = new Assignments(name);
+            assignments.transform(loop.body);
+            if (assignments.found)
+                return null;
+
+            return new InductionVariable(increment.slot, test.operator.type, test.right, step);
+        }
+
+        private static boolean is_counter(Expr expr, String name, int slot) {
+            if (!(expr instanceof Expr.Variable))
+                return false;
+            Expr.Variable variable = (Expr.Variable) expr;
+            return variable.name.lexeme.equals(name) && variable.depth == 0 && variable.slot == slot;
+        }
+    }
+
+    private static class Assignments extends AstTransformer {
+        private final String name;
+        boolean found = false;
+
+        Assignments(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Expr visit_assign_expr(Expr.Assign expr) {
+            if (expr.name.lexeme.equals(name))
+                found = true;
+            return super.visit_assign_expr(expr);
+        }
+    }
+
+    // Assignments in code that runs later: lazy initializers and function bodies
+    private static class DeferredAssignments extends AstTransformer {
+        private final String name;
+        boolean found = false;
+
+        DeferredAssignments(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Stmt visit_lazy_stmt(Stmt.Lazy stmt) {
+            Assignments assignments = new Assignments(name);
+            assignments.transform(stmt.initializer);
+            found |= assignments.found;
+            return stmt;
+        }
+
+        @Override
+        public Stmt visit_function_stmt(Stmt.Function stmt) {
+            if (stmt.deferred != null) { // can't see into it
+                found = true;
+                return stmt;
+            }
+            Assignments assignments = new Assignments(name);
+            assignments.transform(stmt.body);
+            found |= assignments.found;
+            return stmt;
+        }
+    }
+}
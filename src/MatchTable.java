@@ -0,0 +1,76 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// Dispatch table for a match statement, built once by the parser.
+// Arms keyed on a dense run of whole numbers are looked up by array index,
+// everything else goes through a hash lookup. Either way dispatch does not
+// depend on the number of arms.
+class MatchTable {
+    private final Map<Object, Integer> arms = new HashMap<>();
+
+    private Object[] dense_keys = null;
+    private int[] dense_arms = null;
+    private int dense_min = 0;
+
+    boolean add(Object key, int arm) { // false if the key already has an arm
+        if (arms.containsKey(key)) {
+            return false;
+        }
+        arms.put(key, arm);
+        return true;
+    }
+
+    void compile() {
+        if (arms.isEmpty()) {
+            return;
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Object key : arms.keySet()) {
+            if (!is_whole(key)) {
+                return;
+            }
+            long value = (Long) key;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        long span = max - min + 1;
+        if (span > 2L * arms.size() + 8) { // too sparse, stay with the hash lookup
+            return;
+        }
+
+        Object[] keys = new Object[(int) span];
+        int[] indices = new int[(int) span];
+        for (Map.Entry<Object, Integer> entry : arms.entrySet()) {
+            int index = (int) ((Long) entry.getKey() - min);
+            keys[index] = entry.getKey();
+            indices[index] = entry.getValue();
+        }
+
+        dense_min = (int) min;
+        dense_keys = keys;
+        dense_arms = indices;
+    }
+
+    int lookup(Object value) { // arm index, or -1 if no arm matches
+        if (dense_keys != null) {
+            if (!(value instanceof Long)) { // fractions and -0 are never whole keys
+                return -1;
+            }
+            long index = (Long) value - dense_min;
+            if (index < 0 || index >= dense_keys.length || dense_keys[(int) index] == null) {
+                return -1;
+            }
+            return dense_arms[(int) index];
+        }
+
+        Integer arm = arms.get(Rope.flat(value));
+        return arm == null ? -1 : arm;
+    }
+
+    private static boolean is_whole(Object key) {
+        return key instanceof Long && Math.abs((Long) key) < (1 << 30);
+    }
+}
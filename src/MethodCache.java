@@ -0,0 +1,24 @@
+// The method a call site found last time. Kept on the Expr.Call (or
+// Expr.Super) node so the next call can skip the lookup along the
+// superclass chain.
+class MethodCache {
+    final ReigaiClass owner;
+    final ReigaiFunction method;
+    // true if the method is right for any subclass of owner, which holds
+    // as long as the hierarchy version doesn't change
+    private final boolean subclasses;
+    private final int version;
+
+    MethodCache(ReigaiClass owner, ReigaiFunction method, boolean subclasses, int version) {
+        this.owner = owner;
+        this.method = method;
+        this.subclasses = subclasses;
+        this.version = version;
+    }
+
+    boolean matches(ReigaiClass cl, int current_version) {
+        if (cl == owner) // a class's methods never change
+            return true;
+        return subclasses && version == current_version && cl.is_subclass_of(owner);
+    }
+}
@@ -1,4 +1,10 @@
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 class NativeFunctions {
     static ReigaiCallable Clock = new ReigaiCallable() {
@@ -9,7 +15,7 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
-            return (double) System.currentTimeMillis() / 1000.0;
+            return Numbers.of(System.currentTimeMillis() / 1000.0);
         }
 
         @Override
@@ -26,10 +32,25 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
-            if (arguments.get(0) instanceof Double) {
+            if (Numbers.is_number(arguments.get(0))) {
                 return null;
             }
-            return arguments.get(0).toString().length();
+            if (arguments.get(0) instanceof Rope) { // no need to flatten it
+                return (long) ((Rope) arguments.get(0)).length();
+            }
+            if (arguments.get(0) instanceof StringSlice) {
+                return (long) ((StringSlice) arguments.get(0)).length();
+            }
+            if (arguments.get(0) instanceof ReigaiList) {
+                return (long) ((ReigaiList) arguments.get(0)).size();
+            }
+            if (arguments.get(0) instanceof ReigaiMap) {
+                return (long) ((ReigaiMap) arguments.get(0)).size();
+            }
+            if (arguments.get(0) instanceof ReigaiBuffer) {
+                return (long) ((ReigaiBuffer) arguments.get(0)).size();
+            }
+            return (long) arguments.get(0).toString().length();
         }
 
         @Override
@@ -46,8 +67,11 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof Long) {
+                return arguments.get(0);
+            }
             if (arguments.get(0) instanceof Double) {
-                return Math.round((Double) arguments.get(0));
+                return Numbers.of(Math.round((Double) arguments.get(0)));
             }
             return null;
         }
@@ -66,8 +90,11 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof Long) {
+                return Math.abs((Long) arguments.get(0));
+            }
             if (arguments.get(0) instanceof Double) {
-                return Math.abs((Double) arguments.get(0));
+                return Numbers.of(Math.abs((Double) arguments.get(0)));
             }
             return null;
         }
@@ -86,8 +113,11 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof Long) {
+                return arguments.get(0);
+            }
             if (arguments.get(0) instanceof Double) {
-                return Math.floor((Double) arguments.get(0));
+                return Numbers.of(Math.floor((Double) arguments.get(0)));
             }
             return null;
         }
@@ -106,8 +136,11 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof Long) {
+                return arguments.get(0);
+            }
             if (arguments.get(0) instanceof Double) {
-                return Math.ceil((Double) arguments.get(0));
+                return Numbers.of(Math.ceil((Double) arguments.get(0)));
             }
             return null;
         }
@@ -126,8 +159,254 @@ class NativeFunctions {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
-            if (arguments.get(0) instanceof Double && arguments.get(1) instanceof Double) {
-                return Math.pow((Double) arguments.get(0), (Double) arguments.get(1));
+            if (Numbers.is_number(arguments.get(0)) && Numbers.is_number(arguments.get(1))) {
+                return Numbers.of(Math.pow(Numbers.as_double(arguments.get(0)), Numbers.as_double(arguments.get(1))));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Push = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiList) {
+                ((ReigaiList) arguments.get(0)).add(arguments.get(1));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Pop = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiList) {
+                return ((ReigaiList) arguments.get(0)).remove_last();
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Slice = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 3;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiList && arguments.get(1) instanceof Long
+                    && arguments.get(2) instanceof Long) {
+                return ((ReigaiList) arguments.get(0)).slice((Long) arguments.get(1), (Long) arguments.get(2));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Keys = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiMap) {
+                return ((ReigaiMap) arguments.get(0)).keys();
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Has = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiMap && arguments.get(1) != null) {
+                return ((ReigaiMap) arguments.get(0)).contains(arguments.get(1));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Remove = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiMap && arguments.get(1) != null) {
+                return ((ReigaiMap) arguments.get(0)).remove(arguments.get(1));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Buffer = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof Long && (Long) arguments.get(0) >= 0
+                    && (Long) arguments.get(0) <= Integer.MAX_VALUE / Double.BYTES) {
+                return ReigaiBuffer.allocate((int) (long) (Long) arguments.get(0));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable BufferFile = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (!is_string(arguments.get(0))) {
+                return null;
+            }
+            try {
+                return ReigaiBuffer.map(Paths.get(arguments.get(0).toString()));
+            } catch (IOException | InvalidPathException error) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Sum = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiBuffer) {
+                return Numbers.of(((ReigaiBuffer) arguments.get(0)).sum());
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Dot = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiBuffer && arguments.get(1) instanceof ReigaiBuffer) {
+                return Numbers.of(((ReigaiBuffer) arguments.get(0)).dot((ReigaiBuffer) arguments.get(1)));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Scale = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiBuffer && Numbers.is_number(arguments.get(1))) {
+                ((ReigaiBuffer) arguments.get(0)).scale(Numbers.as_double(arguments.get(1)));
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Add = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiBuffer && arguments.get(1) instanceof ReigaiBuffer) {
+                ((ReigaiBuffer) arguments.get(0)).add((ReigaiBuffer) arguments.get(1));
             }
             return null;
         }
@@ -137,4 +416,500 @@ class NativeFunctions {
             return "<native fun>";
         }
     };
-}
\ No newline at end of file
+
+    static ReigaiCallable Map = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // replaces every element with what the function returns for it,
+            // stopping at the first result that isn't a number
+            if (!(arguments.get(0) instanceof ReigaiBuffer) || !(arguments.get(1) instanceof ReigaiCallable)
+                    || ((ReigaiCallable) arguments.get(1)).arity() != 1) {
+                return null;
+            }
+            ReigaiBuffer buffer = (ReigaiBuffer) arguments.get(0);
+            ReigaiCallable function = (ReigaiCallable) arguments.get(1);
+            CallStack calls = interpreter.call_stack;
+            Token site = calls.site(calls.depth() - 1); // where map() was called
+            List<Object> argument = new ArrayList<>(1);
+            argument.add(null);
+            for (int i = 0; i < buffer.size(); i++) {
+                argument.set(0, Numbers.of(buffer.get(i)));
+                Object result = interpreter.call_function(site, function, argument);
+                if (!Numbers.is_number(result)) {
+                    return null;
+                }
+                buffer.set(i, Numbers.as_double(result));
+            }
+            return buffer;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Range = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 3;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            for (Object argument : arguments) {
+                if (!Numbers.is_number(argument)) {
+                    return null;
+                }
+            }
+            double step = Numbers.as_double(arguments.get(2));
+            if (step == 0 || Double.isNaN(step)) {
+                return null;
+            }
+            return new ReigaiRange(Numbers.as_double(arguments.get(0)), Numbers.as_double(arguments.get(1)), step);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Matches = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // true if the pattern is found anywhere in the text
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1))) {
+                return null;
+            }
+            Pattern pattern = PatternCache.get(arguments.get(1).toString());
+            if (pattern == null) {
+                return null;
+            }
+            return pattern.matcher(text(arguments.get(0))).find();
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable FindAll = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1))) {
+                return null;
+            }
+            Pattern pattern = PatternCache.get(arguments.get(1).toString());
+            if (pattern == null) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            ReigaiList found = new ReigaiList(4);
+            Matcher matcher = pattern.matcher(text);
+            while (matcher.find()) {
+                found.add(StringSlice.of(text, matcher.start(), matcher.end()));
+            }
+            return found;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Replace = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 3;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // every match, with $1 and so on in the replacement for groups
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1)) || !is_string(arguments.get(2))) {
+                return null;
+            }
+            Pattern pattern = PatternCache.get(arguments.get(1).toString());
+            if (pattern == null) {
+                return null;
+            }
+            try {
+                return pattern.matcher(arguments.get(0).toString()).replaceAll(arguments.get(2).toString());
+            } catch (IllegalArgumentException | IndexOutOfBoundsException error) { // a bad group reference
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Split = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // the pieces between matches, empty ones included
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1))) {
+                return null;
+            }
+            Pattern pattern = PatternCache.get(arguments.get(1).toString());
+            if (pattern == null) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            ReigaiList pieces = new ReigaiList(4);
+            Matcher matcher = pattern.matcher(text);
+            int start = 0;
+            while (matcher.find()) {
+                if (matcher.end() == 0) // an empty match at the start splits off nothing
+                    continue;
+                pieces.add(StringSlice.of(text, start, matcher.start()));
+                start = matcher.end();
+            }
+            pieces.add(StringSlice.of(text, start, text.length()));
+            return pieces;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Substr = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 3;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // from, inclusive, to to, exclusive, clamped like slice()
+            if (!is_string(arguments.get(0)) || !(arguments.get(1) instanceof Long)
+                    || !(arguments.get(2) instanceof Long)) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            int start = (int) Math.max(0, Math.min((Long) arguments.get(1), text.length()));
+            int end = (int) Math.max(start, Math.min((Long) arguments.get(2), text.length()));
+            return StringSlice.of(text, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable IndexOf = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // -1 if part isn't in the text
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1))) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            String part = arguments.get(1).toString();
+            if (text instanceof StringSlice) {
+                return (long) ((StringSlice) text).index_of(part);
+            }
+            return (long) ((String) text).indexOf(part);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable CharAt = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (!is_string(arguments.get(0)) || !(arguments.get(1) instanceof Long)) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            long index = (Long) arguments.get(1);
+            if (index < 0 || index >= text.length()) {
+                return null;
+            }
+            return String.valueOf(text.charAt((int) index));
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable StartsWith = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1))) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            CharSequence prefix = text(arguments.get(1));
+            if (prefix.length() > text.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (text.charAt(i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Trim = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // without spaces and control characters at either end, as String.trim()
+            if (!is_string(arguments.get(0))) {
+                return null;
+            }
+            CharSequence text = text(arguments.get(0));
+            int start = 0;
+            int end = text.length();
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            return StringSlice.of(text, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Open = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (!is_string(arguments.get(0)) || !is_string(arguments.get(1))) {
+                return null;
+            }
+            try {
+                return ReigaiFile.open(Paths.get(arguments.get(0).toString()), arguments.get(1).toString());
+            } catch (IOException | InvalidPathException error) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Stdin = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 0;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            return ReigaiFile.stdin();
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable ReadLine = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // nil at the end, or if the file wasn't opened for reading
+            if (!(arguments.get(0) instanceof ReigaiFile)) {
+                return null;
+            }
+            return ((ReigaiFile) arguments.get(0)).next();
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable ReadFile = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (!is_string(arguments.get(0))) {
+                return null;
+            }
+            try {
+                return ReigaiFile.read_all(Paths.get(arguments.get(0).toString()));
+            } catch (IOException | InvalidPathException error) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Write = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // true once written, nil if the file isn't open for writing
+            if (!(arguments.get(0) instanceof ReigaiFile) || !((ReigaiFile) arguments.get(0)).is_writable()) {
+                return null;
+            }
+            try {
+                ((ReigaiFile) arguments.get(0)).write(Interpreter.stringify(arguments.get(1)));
+                return true;
+            } catch (IOException error) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable WriteLine = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            // the same as write(), then a line break
+            if (!(arguments.get(0) instanceof ReigaiFile) || !((ReigaiFile) arguments.get(0)).is_writable()) {
+                return null;
+            }
+            try {
+                ((ReigaiFile) arguments.get(0)).write(Interpreter.stringify(arguments.get(1)) + System.lineSeparator());
+                return true;
+            } catch (IOException error) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    static ReigaiCallable Close = new ReigaiCallable() {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (arguments.get(0) instanceof ReigaiFile) {
+                ((ReigaiFile) arguments.get(0)).close();
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "<native fun>";
+        }
+    };
+
+    private static boolean is_string(Object value) {
+        return value instanceof String || value instanceof Rope || value instanceof StringSlice;
+    }
+
+    // The text of a string argument, without copying a slice
+    private static CharSequence text(Object value) {
+        return value instanceof StringSlice ? (StringSlice) value : value.toString();
+    }
+
+    // In the order of their global slots, see Symbols
+    static final String[] NAMES = { "clock", "len", "round", "abs", "floor", "ceil", "pow", "push", "pop", "slice",
+            "keys", "has", "remove", "buffer", "buffer_file", "sum", "dot", "scale", "add", "map", "range", "matches",
+            "find_all", "replace", "split", "open", "stdin", "read_line", "read_file", "write",
+            "write_line", "close", "substr", "index_of", "char_at", "starts_with", "trim" };
+    static final ReigaiCallable[] ALL = { Clock, Len, Round, Abs, Floor, Ceil, Pow, Push, Pop, Slice, Keys, Has,
+            Remove, Buffer, BufferFile, Sum, Dot, Scale, Add, Map, Range, Matches, FindAll, Replace, Split,
+            Open, Stdin, ReadLine, ReadFile, Write, WriteLine, Close,
+            Substr, IndexOf, CharAt, StartsWith, Trim };
+}
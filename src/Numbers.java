@@ -0,0 +1,84 @@
+// Arithmetic on script numbers. A number is a Long when it is whole, not -0,
+// and small enough (|n| <= 2^53) that a double holds it exactly, and a
+// Double otherwise. Every number is kept in that form, so two numbers are
+// '==' exactly when equals() says so, and integer code never touches
+// floating point.
+//
+// Whole results that leave the exact range are computed as doubles, so
+// every operation gives the same value the all-double version gave.
+class Numbers {
+    static final long MAX_EXACT = 1L << 53;
+
+    static boolean is_number(Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    static double as_double(Object value) {
+        return value instanceof Long ? (double) (long) (Long) value : (Double) value;
+    }
+
+    static Object of(double value) {
+        long whole = (long) value;
+        if (whole == value && Math.abs(whole) <= MAX_EXACT && (whole != 0 || Double.doubleToRawLongBits(value) == 0))
+            return whole;
+        return value;
+    }
+
+    static Object of(long value) {
+        if (Math.abs(value) <= MAX_EXACT)
+            return value;
+        return (double) value;
+    }
+
+    static Object negate(Object value) {
+        if (value instanceof Long) {
+            long whole = (Long) value;
+            return whole == 0 ? (Object) (-0.0) : (Object) (-whole);
+        }
+        return of(-(Double) value);
+    }
+
+    static Object add(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long)
+            return of((long) (Long) left + (Long) right);
+        return of(as_double(left) + as_double(right));
+    }
+
+    static Object subtract(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long)
+            return of((long) (Long) left - (Long) right);
+        return of(as_double(left) - as_double(right));
+    }
+
+    static Object multiply(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long a = (Long) left;
+            long b = (Long) right;
+            long product = a * b;
+            if (product == 0 && (a < 0 || b < 0))
+                return -0.0;
+            if (Math.multiplyHigh(a, b) == product >> 63) // didn't overflow
+                return of(product);
+        }
+        return of(as_double(left) * as_double(right));
+    }
+
+    static Object divide(Object left, Object right) {
+        return of(as_double(left) / as_double(right)); // a whole quotient comes out exact
+    }
+
+    static Object modulo(Object left, Object right) {
+        if (left instanceof Long && right instanceof Long && (Long) right != 0) {
+            long a = (Long) left;
+            long remainder = a % (Long) right;
+            return remainder == 0 && a < 0 ? (Object) (-0.0) : (Object) remainder;
+        }
+        return of(as_double(left) % as_double(right));
+    }
+
+    // How a value turns into text when added to a string, "1.0" for 1 as
+    // before
+    static String text(Object value) {
+        return value instanceof Long ? Double.toString((double) (long) (Long) value) : value.toString();
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Passes run over a whole resolved program with --optimize. Passes rewrite
+// the tree and leave it unresolved, so it is resolved again at the end.
+class Optimizer {
+
+    static List<Stmt> optimize(List<Stmt> statements, Profile profile) {
+        if (profile != null) // numbered on the tree as parsed, so it goes first
+            statements = new ProfileGuided(statements, profile).run(statements);
+        statements = new ScalarReplacement(statements).run(statements);
+        new Resolver().resolve(statements); // the loop pass needs to know what is local
+        statements = new LoopOptimizer(statements).run(statements);
+
+        new Resolver().resolve(statements);
+        LoopOptimizer.find_counted_loops(statements); // needs the final slots
+        return statements;
+    }
+
+    // True if expr only reads the given parameters, so it means the same
+    // thing wherever it is copied to
+    static boolean uses_only(Expr expr, Set<String> params) {
+        if (expr instanceof Expr.Literal)
+            return true;
+        if (expr instanceof Expr.Variable)
+            return params.contains(((Expr.Variable) expr).name.lexeme);
+        if (expr instanceof Expr.Grouping)
+            return uses_only(((Expr.Grouping) expr).expression, params);
+        if (expr instanceof Expr.Unary)
+            return uses_only(((Expr.Unary) expr).right, params);
+        if (expr instanceof Expr.Binary)
+            return uses_only(((Expr.Binary) expr).left, params) && uses_only(((Expr.Binary) expr).right, params);
+        if (expr instanceof Expr.Logical)
+            return uses_only(((Expr.Logical) expr).left, params) && uses_only(((Expr.Logical) expr).right, params);
+        return false;
+    }
+
+    // Counts declarations and assignments of every name in the program
+    static class Names extends AstTransformer {
+        // natives that make or change lists and maps; any mention counts, as
+        // one may be called through another name
+        private static final Set<String> CONTAINER_NATIVES = new HashSet<>(
+                Arrays.asList("push", "pop", "slice", "keys", "remove", "find_all", "split"));
+
+        private final Map<String, Integer> declared = new HashMap<>();
+        private final Set<String> assigned = new HashSet<>();
+        private boolean makes_containers = false;
+
+        Names(List<Stmt> program) {
+            transform(program);
+        }
+
+        // Declared once and never assigned, so a top-level declaration of
+        // name is the only thing it can refer to
+        boolean is_fixed(String name) {
+            return declared.getOrDefault(name, 0) == 1 && !assigned.contains(name);
+        }
+
+        // Never declared or assigned, so a global of that name is a native
+        boolean is_native(String name) {
+            return !declared.containsKey(name) && !assigned.contains(name);
+        }
+
+        boolean is_assigned(String name) {
+            return assigned.contains(name);
+        }
+
+        // Lists and maps change without being assigned, so what len() or
+        // '+' give for the same variable may change too. Set by any list or
+        // map literal, index assignment, or native that makes or changes one
+        boolean makes_containers() {
+            return makes_containers;
+        }
+
+        private void declare(Token name) {
+            declared.merge(name.lexeme, 1, Integer::sum);
+        }
+
+        @Override
+        public Stmt visit_var_stmt(Stmt.Var stmt) {
+            declare(stmt.name);
+            return super.visit_var_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_lazy_stmt(Stmt.Lazy stmt) {
+            declare(stmt.name);
+            return super.visit_lazy_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_struct_stmt(Stmt.Struct stmt) {
+            declare(stmt.name);
+            return stmt;
+        }
+
+        @Override
+        public Stmt visit_try_stmt(Stmt.Try stmt) {
+            declare(stmt.name);
+            return super.visit_try_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_forin_stmt(Stmt.ForIn stmt) {
+            declare(stmt.name);
+            return super.visit_forin_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_function_stmt(Stmt.Function stmt) {
+            declare(stmt.name);
+            for (Token param : stmt.params) {
+                declare(param);
+            }
+            return super.visit_function_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_class_stmt(Stmt.Class stmt) {
+            declare(stmt.name);
+            for (Stmt.Function method : stmt.methods) {
+                for (Token param : method.params) {
+                    declare(param);
+                }
+                transform(method.body);
+            }
+            return stmt;
+        }
+
+        @Override
+        public Expr visit_assign_expr(Expr.Assign expr) {
+            assigned.add(expr.name.lexeme);
+            return super.visit_assign_expr(expr);
+        }
+
+        @Override
+        public Expr visit_array_expr(Expr.Array expr) {
+            makes_containers = true;
+            return super.visit_array_expr(expr);
+        }
+
+        @Override
+        public Expr visit_dict_expr(Expr.Dict expr) {
+            makes_containers = true;
+            return super.visit_dict_expr(expr);
+        }
+
+        @Override
+        public Expr visit_indexset_expr(Expr.IndexSet expr) {
+            makes_containers = true;
+            return super.visit_indexset_expr(expr);
+        }
+
+        @Override
+        public Expr visit_variable_expr(Expr.Variable expr) {
+            if (CONTAINER_NATIVES.contains(expr.name.lexeme))
+                makes_containers = true;
+            return expr;
+        }
+    }
+
+    // Copies an expression of parameters with each one replaced by its
+    // argument. Variables are copied too, since each use gets resolved.
+    static class Parameters extends AstTransformer {
+        private final Map<String, Expr> params;
+
+        Parameters(Map<String, Expr> params) {
+            this.params = params;
+        }
+
+        @Override
+        public Expr visit_variable_expr(Expr.Variable expr) {
+            Expr argument = params.get(expr.name.lexeme);
+            if (argument instanceof Expr.Variable)
+                return new Expr.Variable(((Expr.Variable) argument).name);
+            return argument;
+        }
+    }
+}
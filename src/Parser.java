@@ -1,16 +1,31 @@
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Map;
 
 class Parser {
     private static class ParseError extends RuntimeException {
     };
 
-    private final List<Token> tokens;
+    private final TokenBuffer tokens;
+    private final boolean lazy_bodies;
+    private final Resolver resolver;
     private int current = 0;
+    private boolean yields = false; // the function being parsed has a 'yield' of its own
+    Map<Stmt, Integer> lines = null; // line each declaration starts on, kept for the debugger
 
-    Parser(List<Token> tokens) {
+    Parser(TokenBuffer tokens) {
+        this(tokens, false, null);
+    }
+
+    // With lazy_bodies set, function bodies are only brace-matched here and
+    // parsed when the function is first called, see DeferredBody.
+    // With a resolver, scopes are resolved while parsing through its hooks,
+    // so no separate resolver pass is needed.
+    Parser(TokenBuffer tokens, boolean lazy_bodies, Resolver resolver) {
         this.tokens = tokens;
+        this.lazy_bodies = lazy_bodies;
+        this.resolver = resolver;
     }
 
     List<Stmt> parse() {
@@ -21,18 +36,41 @@ class Parser {
         return statements;
     }
 
+    Expr parse_expression() { // an expression on its own, as typed at a breakpoint
+        try {
+            Expr expr = expression();
+            if (!is_at_end())
+                throw error(peek(), "Expect end of expression.");
+            return expr;
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+
     private Expr expression() {
         return assignment();
     }
 
     private Stmt declaration() {
+        int line = tokens.line(current);
+        Stmt stmt = declaration_or_statement();
+        if (lines != null && stmt != null)
+            lines.put(stmt, line);
+        return stmt;
+    }
+
+    private Stmt declaration_or_statement() {
         try {
             if (match(TokenType.CLASS))
                 return class_decl();
+            if (match(TokenType.STRUCT))
+                return struct_decl();
             if (match(TokenType.FUN))
                 return function("function");
             if (match(TokenType.VAR))
                 return var_declaration();
+            if (match(TokenType.LAZY))
+                return lazy_declaration();
             return statement();
         } catch (ParseError error) {
             synchronize();
@@ -41,7 +79,8 @@ class Parser {
     }
 
     private Stmt class_decl() {
-        Token name = consume(TokenType.IDENTIFIER, "Expect class name.");
+        consume(TokenType.IDENTIFIER, "Expect class name.");
+        Token name = previous();
 
         Expr.Variable superclass = null;
         if (match(TokenType.LESSER)) {
@@ -52,69 +91,156 @@ class Parser {
         consume(TokenType.LEFT_BRACE, "Expect '{' before class body.");
 
         List<Stmt.Function> methods = new ArrayList<>();
-        while (!check(TokenType.RIGHT_BRACE) && !is_at_end()) {
-            methods.add((Stmt.Function) function("method"));
+        if (resolver != null)
+            resolver.begin_class(name, superclass);
+        try {
+            while (!check(TokenType.RIGHT_BRACE) && !is_at_end()) {
+                methods.add((Stmt.Function) function("method"));
+            }
+        } finally {
+            if (resolver != null)
+                resolver.end_class(superclass);
         }
 
         consume(TokenType.RIGHT_BRACE, "Expect '}' after class body.");
         return new Stmt.Class(name, superclass, methods);
     }
 
+    private Stmt struct_decl() {
+        consume(TokenType.IDENTIFIER, "Expect struct name.");
+        Token name = previous();
+        consume(TokenType.LEFT_BRACE, "Expect '{' before struct fields.");
+
+        List<Token> fields = new ArrayList<>();
+        if (!check(TokenType.RIGHT_BRACE)) {
+            do {
+                consume(TokenType.IDENTIFIER, "Expect field name.");
+                Token field = previous();
+                for (Token other : fields) {
+                    if (other.lexeme.equals(field.lexeme))
+                        error(field, "Struct already has a field named '" + field.lexeme + "'.");
+                }
+                fields.add(field);
+            } while (match(TokenType.COMMA));
+        }
+        consume(TokenType.RIGHT_BRACE, "Expect '}' after struct fields.");
+
+        Stmt.Struct stmt = new Stmt.Struct(name, fields);
+        if (resolver != null)
+            resolver.struct_decl(stmt);
+        return stmt;
+    }
+
     private Stmt statement() {
+        if (match(TokenType.BREAK))
+            return break_statement();
+        if (match(TokenType.CONTINUE))
+            return continue_statement();
         if (match(TokenType.FOR))
             return for_statement();
         if (match(TokenType.IF))
             return if_statement();
+        if (match(TokenType.MATCH))
+            return match_statement();
         if (match(TokenType.PRINT))
             return print_statement();
         if (match(TokenType.RETURN))
             return return_statement();
+        if (match(TokenType.TRY))
+            return try_statement();
         if (match(TokenType.WHILE))
             return while_statement();
+        if (match(TokenType.YIELD))
+            return yield_statement();
         if (match(TokenType.LEFT_BRACE))
-            return new Stmt.Block(block());
+            return new Stmt.Block(scoped_block());
         return expression_statement();
     }
 
+    private Stmt break_statement() {
+        Token keyword = previous();
+        consume(TokenType.SEMICOLON, "Expect ';' after 'break'.");
+        Stmt.Break stmt = new Stmt.Break(keyword);
+        if (resolver != null)
+            resolver.break_stmt(stmt);
+        return stmt;
+    }
+
+    private Stmt continue_statement() {
+        Token keyword = previous();
+        consume(TokenType.SEMICOLON, "Expect ';' after 'continue'.");
+        Stmt.Continue stmt = new Stmt.Continue(keyword);
+        if (resolver != null)
+            resolver.continue_stmt(stmt);
+        return stmt;
+    }
+
     private Stmt for_statement() {
+        Token keyword = previous();
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'for'.");
+        if (check(TokenType.IDENTIFIER) && tokens.type(current + 1) == TokenType.IN)
+            return for_in_statement(keyword);
 
-        Stmt initializer;
-        if (match(TokenType.SEMICOLON)) {
-            initializer = null;
-        } else if (match(TokenType.VAR)) {
-            initializer = var_declaration();
-        } else {
-            initializer = expression_statement();
-        }
+        boolean scoped = resolver != null && !check(TokenType.SEMICOLON); // the initializer gets a block
+        if (scoped)
+            resolver.begin_scope();
+        try {
+            Stmt initializer;
+            if (match(TokenType.SEMICOLON)) {
+                initializer = null;
+            } else if (match(TokenType.VAR)) {
+                initializer = var_declaration();
+            } else {
+                initializer = expression_statement();
+            }
 
-        Expr condition = null;
-        if (!check(TokenType.SEMICOLON)) {
-            condition = expression();
-        }
-        consume(TokenType.SEMICOLON, "Expect ';' after loop condition.");
+            Expr condition = null;
+            if (!check(TokenType.SEMICOLON)) {
+                condition = expression();
+            }
+            consume(TokenType.SEMICOLON, "Expect ';' after loop condition.");
 
-        Expr increment = null;
-        if (!check(TokenType.RIGHT_BRACE)) {
-            increment = expression();
-        }
-        consume(TokenType.RIGHT_PAREN, "Expect ')' after for clauses.");
+            Expr increment = null;
+            if (!check(TokenType.RIGHT_PAREN)) {
+                increment = expression();
+            }
+            consume(TokenType.RIGHT_PAREN, "Expect ')' after for clauses.");
 
-        Stmt body = statement();
+            Stmt body = loop_body();
 
-        if (increment != null) {
-            body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
-        }
+            if (condition == null) {
+                condition = new Expr.Literal(true);
+            }
+            // increment is kept on the loop node so 'continue' still runs it
+            body = new Stmt.While(condition, body, increment);
 
-        if (condition == null) {
-            condition = new Expr.Literal(true);
+            if (initializer != null) {
+                body = new Stmt.Block(Arrays.asList(initializer, body));
+            }
+            return body;
+        } finally {
+            if (scoped)
+                resolver.end_scope();
         }
-        body = new Stmt.While(condition, body);
+    }
 
-        if (initializer != null) {
-            body = new Stmt.Block(Arrays.asList(initializer, body));
+    private Stmt for_in_statement(Token keyword) {
+        consume(TokenType.IDENTIFIER, "Expect loop variable name.");
+        Token name = previous();
+        consume(TokenType.IN, "Expect 'in' after loop variable.");
+        Expr iterable = expression();
+        consume(TokenType.RIGHT_PAREN, "Expect ')' after for clauses.");
+
+        if (resolver == null)
+            return new Stmt.ForIn(keyword, name, iterable, loop_body());
+        resolver.begin_scope();
+        try {
+            resolver.declare(name);
+            resolver.define(name);
+            return new Stmt.ForIn(keyword, name, iterable, loop_body());
+        } finally {
+            resolver.end_scope();
         }
-        return body;
     }
 
     private Stmt if_statement() {
@@ -130,6 +256,61 @@ class Parser {
         return new Stmt.If(condition, then_branch, else_branch);
     }
 
+    private Stmt match_statement() {
+        Token keyword = previous();
+        consume(TokenType.LEFT_PAREN, "Expect '(' after 'match'.");
+        Expr subject = expression();
+        consume(TokenType.RIGHT_PAREN, "Expect ')' after match subject.");
+        consume(TokenType.LEFT_BRACE, "Expect '{' before match arms.");
+
+        List<Stmt> arms = new ArrayList<>();
+        Stmt else_branch = null;
+        MatchTable table = new MatchTable();
+
+        while (!check(TokenType.RIGHT_BRACE) && !is_at_end()) {
+            if (match(TokenType.ELSE)) {
+                if (else_branch != null) {
+                    error(previous(), "Match can only have one 'else' arm.");
+                }
+                consume(TokenType.COLON, "Expect ':' after 'else'.");
+                else_branch = statement();
+                continue;
+            }
+
+            do {
+                Token pattern = peek();
+                if (!table.add(match_pattern(), arms.size())) {
+                    error(pattern, "Duplicate match arm.");
+                }
+            } while (match(TokenType.COMMA));
+            consume(TokenType.COLON, "Expect ':' after match pattern.");
+            arms.add(statement());
+        }
+
+        consume(TokenType.RIGHT_BRACE, "Expect '}' after match arms.");
+        table.compile();
+        return new Stmt.Match(keyword, subject, arms, else_branch, table);
+    }
+
+    private Object match_pattern() {
+        if (match(TokenType.FALSE))
+            return false;
+        if (match(TokenType.TRUE))
+            return true;
+        if (match(TokenType.NIL))
+            return null;
+        if (match(TokenType.STRING))
+            return previous().literal;
+        if (match(TokenType.MINUS)) {
+            consume(TokenType.NUMBER, "Expect number after '-' in match pattern.");
+            return Numbers.negate(previous().literal);
+        }
+        if (match(TokenType.NUMBER))
+            return previous().literal;
+
+        throw error(peek(), "Match patterns must be number, string, boolean or nil literals.");
+    }
+
     private Stmt print_statement() {
         Expr value = expression();
         consume(TokenType.SEMICOLON, "Expect ';' after value.");
@@ -145,20 +326,76 @@ class Parser {
         }
 
         consume(TokenType.SEMICOLON, "Expect ';' after return value.");
-        return new Stmt.Return(keyword, value);
+        Stmt.Return stmt = new Stmt.Return(keyword, value);
+        if (resolver != null)
+            resolver.return_stmt(stmt);
+        return stmt;
+    }
+
+    private Stmt try_statement() {
+        Token keyword = previous();
+        consume(TokenType.LEFT_BRACE, "Expect '{' after 'try'.");
+        List<Stmt> body = scoped_block();
+        consume(TokenType.CATCH, "Expect 'catch' after try block.");
+        consume(TokenType.LEFT_PAREN, "Expect '(' after 'catch'.");
+        consume(TokenType.IDENTIFIER, "Expect error variable name.");
+        Token name = previous();
+        consume(TokenType.RIGHT_PAREN, "Expect ')' after error variable name.");
+        consume(TokenType.LEFT_BRACE, "Expect '{' before catch block.");
+
+        if (resolver == null)
+            return new Stmt.Try(keyword, body, name, block());
+        resolver.begin_scope();
+        try {
+            resolver.declare(name);
+            resolver.define(name);
+            return new Stmt.Try(keyword, body, name, block());
+        } finally {
+            resolver.end_scope();
+        }
+    }
+
+    private Stmt yield_statement() {
+        Token keyword = previous();
+        Expr value = null;
+
+        if (!check(TokenType.SEMICOLON)) {
+            value = expression();
+        }
+
+        consume(TokenType.SEMICOLON, "Expect ';' after yield value.");
+        Stmt.Yield stmt = new Stmt.Yield(keyword, value);
+        if (resolver != null)
+            resolver.yield_stmt(stmt);
+        yields = true;
+        return stmt;
     }
 
     private Stmt while_statement() {
         consume(TokenType.LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
         consume(TokenType.RIGHT_PAREN, "Expect ')' after 'while' loop.");
-        Stmt body = statement();
+        Stmt body = loop_body();
 
-        return new Stmt.While(condition, body);
+        return new Stmt.While(condition, body, null);
+    }
+
+    private Stmt loop_body() {
+        if (resolver == null)
+            return statement();
+        resolver.begin_loop();
+        try {
+            return statement();
+        } finally {
+            resolver.end_loop();
+        }
     }
 
     private Stmt var_declaration() {
-        Token name = consume(TokenType.IDENTIFIER, "Expected variable name.");
+        consume(TokenType.IDENTIFIER, "Expected variable name.");
+        Token name = previous();
+        if (resolver != null)
+            resolver.declare(name);
 
         Expr initializer = null;
         if (match(TokenType.EQUAL)) {
@@ -166,9 +403,27 @@ class Parser {
         }
 
         consume(TokenType.SEMICOLON, "Expect ';' after end of variable declaration.");
+        if (resolver != null)
+            resolver.define(name);
         return new Stmt.Var(name, initializer);
     }
 
+    private Stmt lazy_declaration() {
+        consume(TokenType.VAR, "Expect 'var' after 'lazy'.");
+        consume(TokenType.IDENTIFIER, "Expected variable name.");
+        Token name = previous();
+        if (resolver != null)
+            resolver.declare(name);
+
+        consume(TokenType.EQUAL, "Expect '=' after lazy variable name.");
+        Expr initializer = expression();
+
+        consume(TokenType.SEMICOLON, "Expect ';' after end of variable declaration.");
+        if (resolver != null)
+            resolver.define_lazy(name);
+        return new Stmt.Lazy(name, initializer);
+    }
+
     private Stmt expression_statement() {
         Expr value = expression();
         consume(TokenType.SEMICOLON, "Expect ';' after expression.");
@@ -176,7 +431,12 @@ class Parser {
     }
 
     private Stmt function(String kind) {
-        Token name = consume(TokenType.IDENTIFIER, "Expect " + kind + " name.");
+        consume(TokenType.IDENTIFIER, "Expect " + kind + " name.");
+        Token name = previous();
+        if (resolver != null && kind.equals("function")) {
+            resolver.declare(name);
+            resolver.define(name);
+        }
         consume(TokenType.LEFT_PAREN, "Expect '(' after " + kind + " name.");
 
         List<Token> parameters = new ArrayList<>();
@@ -185,14 +445,70 @@ class Parser {
                 if (parameters.size() >= 255) {
                     error(peek(), "Can't have more than 255 parameters.");
                 }
-                parameters.add(consume(TokenType.IDENTIFIER, "Expect parameter name."));
+                consume(TokenType.IDENTIFIER, "Expect parameter name.");
+                parameters.add(previous());
             } while (match(TokenType.COMMA));
         }
         consume(TokenType.RIGHT_PAREN, "Expect ')' after parameters.");
 
         consume(TokenType.LEFT_BRACE, "Expect '{' before " + kind + " body.");
-        List<Stmt> body = block();
-        return new Stmt.Function(name, parameters, body);
+        boolean enclosing_yields = yields;
+        yields = false;
+        if (resolver != null) {
+            resolver.begin_function(
+                    kind.equals("function") ? Resolver.FunctionType.FUNCTION : Resolver.method_type(name), parameters);
+        }
+        try {
+            if (lazy_bodies) {
+                int body_start = current;
+                skip_block();
+                DeferredBody deferred = new DeferredBody(tokens, body_start);
+                if (resolver != null)
+                    deferred.resolve_with(resolver.snapshot());
+                return new Stmt.Function(name, parameters, new ArrayList<>(), deferred);
+            }
+            List<Stmt> body = block();
+            Stmt.Function function = new Stmt.Function(name, parameters, body, null);
+            function.generator = yields;
+            return function;
+        } finally {
+            yields = enclosing_yields;
+            if (resolver != null)
+                resolver.end_function();
+        }
+    }
+
+    List<Stmt> deferred_block(int start) { // parses a body skipped by skip_block()
+        current = start;
+        return block();
+    }
+
+    boolean deferred_yields() { // whether the body deferred_block() parsed has a 'yield'
+        return yields;
+    }
+
+    private void skip_block() {
+        int depth = 1;
+        while (!is_at_end()) {
+            advance();
+            if (tokens.type(current - 1) == TokenType.LEFT_BRACE) {
+                depth++;
+            } else if (tokens.type(current - 1) == TokenType.RIGHT_BRACE && --depth == 0) {
+                return;
+            }
+        }
+        throw error(peek(), "Expect '}' after block.");
+    }
+
+    private List<Stmt> scoped_block() {
+        if (resolver == null)
+            return block();
+        resolver.begin_scope();
+        try {
+            return block();
+        } finally {
+            resolver.end_scope();
+        }
     }
 
     private List<Stmt> block() {
@@ -206,8 +522,82 @@ class Parser {
         return statements;
     }
 
+    // Expressions are parsed by precedence climbing: every token type has a
+    // rule saying how it starts an expression (prefix), how it continues one
+    // (infix) and how tightly it binds. Literals and identifiers are parsed
+    // in one step instead of descending through every precedence level.
+    private enum Precedence {
+        NONE,
+        OR, // or
+        AND, // and
+        EQUALITY, // == !=
+        COMPARISON, // < > <= >=
+        TERM, // + -
+        FACTOR, // * / %
+        UNARY, // ! -
+        CALL, // . () []
+        PRIMARY,
+    }
+
+    private interface PrefixRule {
+        Expr parse(Parser parser);
+    }
+
+    private interface InfixRule {
+        Expr parse(Parser parser, Expr left);
+    }
+
+    private static final PrefixRule[] prefix_rules = new PrefixRule[TokenType.values().length];
+    private static final InfixRule[] infix_rules = new InfixRule[TokenType.values().length];
+    private static final Precedence[] precedences = new Precedence[TokenType.values().length];
+    private static final Precedence[] precedence_levels = Precedence.values();
+
+    static {
+        Arrays.fill(precedences, Precedence.NONE);
+
+        prefix(TokenType.FALSE, parser -> new Expr.Literal(false));
+        prefix(TokenType.TRUE, parser -> new Expr.Literal(true));
+        prefix(TokenType.NIL, parser -> new Expr.Literal(null));
+        prefix(TokenType.NUMBER, parser -> new Expr.Literal(parser.tokens.literal(parser.current - 1)));
+        prefix(TokenType.STRING, parser -> new Expr.Literal(parser.tokens.literal(parser.current - 1)));
+        prefix(TokenType.SUPER, Parser::super_expr);
+        prefix(TokenType.THIS, Parser::this_expr);
+        prefix(TokenType.IDENTIFIER, Parser::variable);
+        prefix(TokenType.LEFT_PAREN, Parser::grouping);
+        prefix(TokenType.LEFT_BRACKET, Parser::array);
+        prefix(TokenType.LEFT_BRACE, Parser::dict); // a '{' starting a statement is a block
+        prefix(TokenType.BANG, Parser::unary);
+        prefix(TokenType.MINUS, Parser::unary);
+
+        infix(TokenType.OR, Precedence.OR, Parser::logical);
+        infix(TokenType.AND, Precedence.AND, Parser::logical);
+        infix(TokenType.BANG_EQUAL, Precedence.EQUALITY, Parser::binary);
+        infix(TokenType.EQUAL_EQUAL, Precedence.EQUALITY, Parser::binary);
+        infix(TokenType.GREATER, Precedence.COMPARISON, Parser::binary);
+        infix(TokenType.GREATER_EQUAL, Precedence.COMPARISON, Parser::binary);
+        infix(TokenType.LESSER, Precedence.COMPARISON, Parser::binary);
+        infix(TokenType.LESSER_EQUAL, Precedence.COMPARISON, Parser::binary);
+        infix(TokenType.MINUS, Precedence.TERM, Parser::binary);
+        infix(TokenType.PLUS, Precedence.TERM, Parser::binary);
+        infix(TokenType.SLASH, Precedence.FACTOR, Parser::binary);
+        infix(TokenType.STAR, Precedence.FACTOR, Parser::binary);
+        infix(TokenType.MOD, Precedence.FACTOR, Parser::binary);
+        infix(TokenType.LEFT_PAREN, Precedence.CALL, Parser::finish_call);
+        infix(TokenType.DOT, Precedence.CALL, Parser::get);
+        infix(TokenType.LEFT_BRACKET, Precedence.CALL, Parser::index);
+    }
+
+    private static void prefix(TokenType type, PrefixRule rule) {
+        prefix_rules[type.ordinal()] = rule;
+    }
+
+    private static void infix(TokenType type, Precedence precedence, InfixRule rule) {
+        infix_rules[type.ordinal()] = rule;
+        precedences[type.ordinal()] = precedence;
+    }
+
     private Expr assignment() {
-        Expr expr = or();
+        Expr expr = parse_precedence(Precedence.OR);
 
         if (match(TokenType.EQUAL)) {
             Token equals = previous();
@@ -215,106 +605,105 @@ class Parser {
 
             if (expr instanceof Expr.Variable) {
                 Token name = ((Expr.Variable) expr).name;
-                return new Expr.Assign(name, value);
+                Expr.Assign assign = new Expr.Assign(name, value);
+                if (resolver != null)
+                    resolver.assign(assign);
+                return assign;
             } else if (expr instanceof Expr.Get) {
                 Expr.Get get = (Expr.Get) expr;
-                return new Expr.Set(get.object, get.name, value);
+                Expr.Set set = new Expr.Set(get.object, get.name, value);
+                set.slot = get.slot;
+                return set;
+            } else if (expr instanceof Expr.Index) {
+                Expr.Index index = (Expr.Index) expr;
+                return new Expr.IndexSet(index.object, index.bracket, index.index, value);
             }
             error(equals, "Invalid assignment target.");
         }
         return expr;
     }
 
-    private Expr or() {
-        Expr expr = and();
-
-        while (match(TokenType.OR)) {
-            Token operator = previous();
-            Expr right = and();
-            expr = new Expr.Logical(expr, operator, right);
+    // Parses an expression whose operators bind at least as tightly as precedence
+    private Expr parse_precedence(Precedence precedence) {
+        PrefixRule prefix = prefix_rules[peek_type().ordinal()];
+        if (prefix == null) {
+            throw error(peek(), "Expect expression.");
         }
+        advance();
+        Expr expr = prefix.parse(this);
 
-        return expr;
-    }
-
-    private Expr and() {
-        Expr expr = equality();
-
-        while (match(TokenType.AND)) {
-            Token operator = previous();
-            Expr right = equality();
-            expr = new Expr.Logical(expr, operator, right);
+        while (precedence.ordinal() <= precedences[peek_type().ordinal()].ordinal()) {
+            advance();
+            expr = infix_rules[tokens.type(current - 1).ordinal()].parse(this, expr);
         }
 
         return expr;
     }
 
-    private Expr equality() {
-        Expr expr = comparison();
+    private Expr binary(Expr left) {
+        Token operator = previous();
+        Expr right = parse_precedence(next(operator));
+        return new Expr.Binary(left, operator, right);
+    }
 
-        while (match(TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
+    private Expr logical(Expr left) {
+        Token operator = previous();
+        Expr right = parse_precedence(next(operator));
+        return new Expr.Logical(left, operator, right);
+    }
 
-        return expr;
+    private static Precedence next(Token operator) { // binary operators are left associative
+        return precedence_levels[precedences[operator.type.ordinal()].ordinal() + 1];
     }
 
-    private Expr comparison() {
-        Expr expr = term();
-        while (match(TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.LESSER, TokenType.LESSER_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
+    private Expr unary() {
+        Token operator = previous();
+        // chained prefix operators recurse here directly to keep the stack shallow
+        Expr right = match(TokenType.BANG, TokenType.MINUS) ? unary() : parse_precedence(Precedence.UNARY);
+        return new Expr.Unary(operator, right);
     }
 
-    private Expr term() {
-        Expr expr = factor();
-        while (match(TokenType.MINUS, TokenType.PLUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
+    private Expr get(Expr object) {
+        consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
+        Token name = previous();
+        Expr.Get get = new Expr.Get(object, name);
+        if (resolver != null)
+            get.slot = resolver.field_slot(name);
+        return get;
     }
 
-    private Expr factor() {
-        Expr expr = unary();
-        while (match(TokenType.SLASH, TokenType.STAR, TokenType.MOD)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
+    private Expr index(Expr object) {
+        Token bracket = previous();
+        Expr index = expression();
+        consume(TokenType.RIGHT_BRACKET, "Expect ']' after index.");
+        return new Expr.Index(object, bracket, index);
     }
 
-    private Expr unary() {
-        if (match(TokenType.BANG, TokenType.MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            return new Expr.Unary(operator, right);
+    private Expr array() {
+        Token bracket = previous();
+        List<Expr> elements = new ArrayList<>();
+        if (!check(TokenType.RIGHT_BRACKET)) {
+            do {
+                elements.add(expression());
+            } while (match(TokenType.COMMA));
         }
-        return call();
+        consume(TokenType.RIGHT_BRACKET, "Expect ']' after list elements.");
+        return new Expr.Array(bracket, elements);
     }
 
-    private Expr call() {
-        Expr expr = primary();
-
-        while (true) {
-            if (match(TokenType.LEFT_PAREN)) {
-                expr = finish_call(expr);
-            } else if (match(TokenType.DOT)) {
-                Token name = consume(TokenType.IDENTIFIER, "Expect property name after '.'.");
-                expr = new Expr.Get(expr, name);
-            } else {
-                break;
-            }
+    private Expr dict() {
+        Token brace = previous();
+        List<Expr> keys = new ArrayList<>();
+        List<Expr> values = new ArrayList<>();
+        if (!check(TokenType.RIGHT_BRACE)) {
+            do {
+                keys.add(expression());
+                consume(TokenType.COLON, "Expect ':' after map key.");
+                values.add(expression());
+            } while (match(TokenType.COMMA));
         }
-
-        return expr;
+        consume(TokenType.RIGHT_BRACE, "Expect '}' after map entries.");
+        return new Expr.Dict(brace, keys, values);
     }
 
     private Expr finish_call(Expr callee) {
@@ -328,36 +717,41 @@ class Parser {
             } while (match(TokenType.COMMA));
         }
 
-        Token paren = consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+        consume(TokenType.RIGHT_PAREN, "Expect ')' after arguments.");
+        Token paren = previous();
         return new Expr.Call(callee, paren, arguments);
     }
 
-    private Expr primary() {
-        if (match(TokenType.FALSE))
-            return new Expr.Literal(false);
-        if (match(TokenType.TRUE))
-            return new Expr.Literal(true);
-        if (match(TokenType.NIL))
-            return new Expr.Literal(null);
-        if (match(TokenType.NUMBER, TokenType.STRING))
-            return new Expr.Literal(previous().literal);
-        if (match(TokenType.SUPER)) {
-            Token keyword = previous();
-            consume(TokenType.DOT, "Expect '.' after super.");
-            Token method = consume(TokenType.IDENTIFIER, "Expect superclass method name.");
-            return new Expr.Super(keyword, method);
-        }
-        if (match(TokenType.THIS))
-            return new Expr.This(previous());
-        if (match(TokenType.IDENTIFIER))
-            return new Expr.Variable(previous());
-        if (match(TokenType.LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
-        }
+    private Expr super_expr() {
+        Token keyword = previous();
+        consume(TokenType.DOT, "Expect '.' after super.");
+        consume(TokenType.IDENTIFIER, "Expect superclass method name.");
+        Token method = previous();
+        Expr.Super expr = new Expr.Super(keyword, method);
+        if (resolver != null)
+            resolver.super_expr(expr);
+        return expr;
+    }
+
+    private Expr this_expr() {
+        Expr.This expr = new Expr.This(previous());
+        if (resolver != null)
+            resolver.this_expr(expr);
+        return expr;
+    }
+
+    private Expr variable() {
+        Expr.Variable expr = new Expr.Variable(previous());
+        // a variable about to be assigned is resolved as the Assign instead
+        if (resolver != null && !check(TokenType.EQUAL))
+            resolver.variable(expr);
+        return expr;
+    }
 
-        throw error(peek(), "Expect expression.");
+    private Expr grouping() {
+        Expr expr = expression();
+        consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+        return new Expr.Grouping(expr);
     }
 
     private boolean match(TokenType... types) {
@@ -370,34 +764,37 @@ class Parser {
         return false;
     }
 
-    private Token consume(TokenType type, String message) {
-        if (check(type))
-            return advance();
-        throw error(peek(), message);
+    private void consume(TokenType type, String message) {
+        if (!check(type))
+            throw error(peek(), message);
+        advance();
     }
 
     private boolean check(TokenType type) {
         if (is_at_end())
             return false;
-        return peek().type == type;
+        return peek_type() == type;
     }
 
-    private Token advance() {
+    private void advance() {
         if (!is_at_end())
             current++;
-        return previous();
     }
 
     private boolean is_at_end() {
-        return peek().type == TokenType.EOF;
+        return peek_type() == TokenType.EOF;
+    }
+
+    private TokenType peek_type() {
+        return tokens.type(current);
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
     private ParseError error(Token token, String message) {
@@ -409,18 +806,23 @@ class Parser {
         advance();
 
         while (!is_at_end()) {
-            if (previous().type == TokenType.SEMICOLON)
+            if (tokens.type(current - 1) == TokenType.SEMICOLON)
                 return;
 
-            switch (peek().type) {
+            switch (peek_type()) {
                 case CLASS:
+                case STRUCT:
                 case FUN:
                 case VAR:
+                case LAZY:
                 case FOR:
                 case IF:
+                case MATCH:
                 case WHILE:
                 case PRINT:
                 case RETURN:
+                case TRY:
+                case YIELD:
                     return;
                 default:
                     break;
@@ -0,0 +1,42 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Compiled patterns for the regex natives, keyed by the pattern text. The
+// CAPACITY most recently used are kept, so a loop calling them with the
+// same few patterns compiles each one once.
+class PatternCache {
+    static final int CAPACITY = 64;
+
+    private static final Map<String, Pattern> patterns = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    private static long hits = 0;
+    private static long misses = 0;
+
+    static Pattern get(String regex) { // null if it doesn't compile
+        Pattern pattern = patterns.get(regex);
+        if (pattern != null) {
+            hits++;
+            return pattern;
+        }
+        misses++;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException error) {
+            return null;
+        }
+        patterns.put(regex, pattern);
+        return pattern;
+    }
+
+    static String stats() {
+        long lookups = hits + misses;
+        return String.format("regex cache: %d hits, %d misses, %.1f%% hit rate", hits, misses,
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// What a run did at each branch and call site. Recorded with --profile-out
+// and read back with --profile-in, so the optimizer can use it before the
+// next run of the same script starts.
+//
+// Nodes are identified by their position in a fixed walk of the tree as it
+// was parsed, and a profile only applies to a source with the same hash.
+class Profile {
+    private static final String HEADER = "reigai-profile";
+    private static final int NO_TARGET = -1; // not a function, e.g. a class or a native
+    private static final int MANY_TARGETS = -2;
+
+    private final int fingerprint;
+    private final List<Object> nodes = new ArrayList<>();
+    private final Map<Object, Integer> ids = new IdentityHashMap<>();
+
+    private final Map<Integer, long[]> branches = new HashMap<>(); // taken, not taken
+    private final Map<Integer, long[]> calls = new HashMap<>(); // count, target
+
+    Profile(List<Stmt> program, int fingerprint) {
+        this.fingerprint = fingerprint;
+        new Numbering().transform(program);
+    }
+
+    // null, after a warning, if the profile was recorded for another source
+    static Profile read(Path path, List<Stmt> program, int fingerprint) throws IOException {
+        Profile profile = new Profile(program, fingerprint);
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(HEADER + " " + fingerprint)) {
+                System.err.println("Profile " + path + " was recorded for a different script, ignoring it.");
+                return null;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                int id = Integer.parseInt(parts[1]);
+                long[] counts = { Long.parseLong(parts[2]), Long.parseLong(parts[3]) };
+                if (parts[0].equals("branch")) {
+                    profile.branches.put(id, counts);
+                } else if (parts[0].equals("call")) {
+                    profile.calls.put(id, counts);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException error) {
+            System.err.println("Profile " + path + " is malformed, ignoring it.");
+            return null;
+        }
+        return profile;
+    }
+
+    void write(Path path) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+            writer.println(HEADER + " " + fingerprint);
+            for (Map.Entry<Integer, long[]> entry : branches.entrySet()) {
+                writer.println("branch " + entry.getKey() + " " + entry.getValue()[0] + " " + entry.getValue()[1]);
+            }
+            for (Map.Entry<Integer, long[]> entry : calls.entrySet()) {
+                writer.println("call " + entry.getKey() + " " + entry.getValue()[0] + " " + entry.getValue()[1]);
+            }
+        }
+    }
+
+    void branch(Stmt.If stmt, boolean taken) {
+        Integer id = ids.get(stmt);
+        if (id == null)
+            return;
+        branches.computeIfAbsent(id, key -> new long[2])[taken ? 0 : 1]++;
+    }
+
+    void call(Expr.Call expr, Object callee) {
+        Integer id = ids.get(expr);
+        if (id == null)
+            return;
+
+        int target = NO_TARGET;
+        if (callee instanceof ReigaiFunction) {
+            target = ids.getOrDefault(((ReigaiFunction) callee).declaration, NO_TARGET);
+        }
+
+        long[] site = calls.get(id);
+        if (site == null) {
+            calls.put(id, new long[] { 1, target });
+            return;
+        }
+        site[0]++;
+        if (site[1] != target)
+            site[1] = MANY_TARGETS;
+    }
+
+    long taken(Stmt.If stmt) {
+        long[] counts = branches.get(ids.get(stmt));
+        return counts == null ? 0 : counts[0];
+    }
+
+    long calls(Expr.Call expr) {
+        long[] site = calls.get(ids.get(expr));
+        return site == null ? 0 : site[0];
+    }
+
+    // The one function called from expr, or null if there were several or
+    // it wasn't a function declared in the script
+    Stmt.Function target(Expr.Call expr) {
+        long[] site = calls.get(ids.get(expr));
+        if (site == null || site[1] < 0 || site[1] >= nodes.size())
+            return null;
+        Object node = nodes.get((int) site[1]);
+        return node instanceof Stmt.Function ? (Stmt.Function) node : null;
+    }
+
+    private class Numbering extends AstTransformer {
+        private void number(Object node) {
+            ids.put(node, nodes.size());
+            nodes.add(node);
+        }
+
+        @Override
+        public Stmt visit_if_stmt(Stmt.If stmt) {
+            number(stmt);
+            return super.visit_if_stmt(stmt);
+        }
+
+        @Override
+        public Expr visit_call_expr(Expr.Call expr) {
+            number(expr);
+            return super.visit_call_expr(expr);
+        }
+
+        @Override
+        public Stmt visit_function_stmt(Stmt.Function stmt) {
+            number(stmt);
+            return super.visit_function_stmt(stmt);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Uses a profile from an earlier run (--profile-in) to
+//
+// - reorder 'if (x == a) ... else if (x == b) ...' chains so the arm taken
+//   most often is tested first. Only done when x is a local and the values
+//   are distinct literals: the tests can't fail and at most one can be true,
+//   so their order can't change what the chain does.
+// - inline hot calls to small functions, those declared once at the top
+//   level whose body is 'return <expression of the parameters>;', when the
+//   arguments are literals or locals and so can be copied freely.
+class ProfileGuided extends AstTransformer {
+    static final long HOT_CALLS = 1000;
+
+    private final Profile profile;
+    private final Set<Stmt.Function> inlinable = new HashSet<>();
+
+    ProfileGuided(List<Stmt> program, Profile profile) {
+        this.profile = profile;
+
+        Optimizer.Names names = new Optimizer.Names(program);
+        for (Stmt stmt : program) {
+            if (stmt instanceof Stmt.Function && names.is_fixed(((Stmt.Function) stmt).name.lexeme)
+                    && is_small((Stmt.Function) stmt)) {
+                inlinable.add((Stmt.Function) stmt);
+            }
+        }
+    }
+
+    List<Stmt> run(List<Stmt> program) {
+        return transform(program);
+    }
+
+    private static boolean is_small(Stmt.Function function) {
+        if (function.deferred != null || function.body.size() != 1 || !(function.body.get(0) instanceof Stmt.Return))
+            return false;
+        Expr value = ((Stmt.Return) function.body.get(0)).value;
+        if (value == null)
+            return false;
+
+        Set<String> params = new HashSet<>();
+        for (Token param : function.params) {
+            params.add(param.lexeme);
+        }
+        return Optimizer.uses_only(value, params);
+    }
+
+    @Override
+    public Stmt visit_if_stmt(Stmt.If stmt) {
+        List<Stmt.If> chain = new ArrayList<>();
+        for (Stmt arm = stmt; arm instanceof Stmt.If; arm = ((Stmt.If) arm).else_branch) {
+            chain.add((Stmt.If) arm);
+        }
+        if (chain.size() < 2 || !is_exclusive(chain))
+            return super.visit_if_stmt(stmt);
+
+        List<Stmt.If> sorted = new ArrayList<>(chain);
+        sorted.sort((a, b) -> Long.compare(profile.taken(b), profile.taken(a))); // stable
+        if (sorted.equals(chain))
+            return super.visit_if_stmt(stmt);
+
+        Stmt result = transform(chain.get(chain.size() - 1).else_branch);
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            Stmt.If arm = sorted.get(i);
+            result = new Stmt.If(arm.condition, transform(arm.then_branch), result);
+        }
+        return result;
+    }
+
+    // Every test compares the same local to a different literal
+    private static boolean is_exclusive(List<Stmt.If> chain) {
+        Expr.Variable subject = null;
+        List<Object> values = new ArrayList<>();
+        for (Stmt.If arm : chain) {
+            if (!(arm.condition instanceof Expr.Binary))
+                return false;
+            Expr.Binary test = (Expr.Binary) arm.condition;
+            if (test.operator.type != TokenType.EQUAL_EQUAL || !(test.left instanceof Expr.Variable)
+                    || !(test.right instanceof Expr.Literal))
+                return false;
+
+            Expr.Variable variable = (Expr.Variable) test.left;
+            if (variable.depth < 0)
+                return false;
+            if (subject == null) {
+                subject = variable;
+            } else if (!variable.name.lexeme.equals(subject.name.lexeme) || variable.depth != subject.depth
+                    || variable.slot != subject.slot) {
+                return false;
+            }
+
+            Object value = ((Expr.Literal) test.right).value;
+            for (Object seen : values) {
+                if (Objects.equals(seen, value))
+                    return false;
+            }
+            values.add(value);
+        }
+        return true;
+    }
+
+    @Override
+    public Expr visit_call_expr(Expr.Call expr) {
+        Stmt.Function target = profile.target(expr);
+        if (target == null || !inlinable.contains(target) || profile.calls(expr) < HOT_CALLS)
+            return super.visit_call_expr(expr);
+        if (!(expr.callee instanceof Expr.Variable) || ((Expr.Variable) expr.callee).depth >= 0
+                || !((Expr.Variable) expr.callee).name.lexeme.equals(target.name.lexeme)
+                || expr.arguments.size() != target.params.size())
+            return super.visit_call_expr(expr);
+
+        Map<String, Expr> params = new HashMap<>();
+        for (int i = 0; i < expr.arguments.size(); i++) {
+            Expr argument = expr.arguments.get(i);
+            boolean local = argument instanceof Expr.Variable && ((Expr.Variable) argument).depth >= 0;
+            if (!local && !(argument instanceof Expr.Literal))
+                return super.visit_call_expr(expr);
+            params.put(target.params.get(i).lexeme, argument);
+        }
+
+        Expr body = new Optimizer.Parameters(params).transform(((Stmt.Return) target.body.get(0)).value);
+        // 'f and <body>': still reads f, so calling it before it is declared
+        // fails as before, and a function is always truthy
+        Token and = new Token(TokenType.AND, "and", null, expr.paren.line);
+        return new Expr.Logical(new Expr.Variable(((Expr.Variable) expr.callee).name), and, body);
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A fixed number of doubles kept off the Java heap, either in a direct
+// buffer or mapped from a file, so large numeric data costs the GC nothing.
+// The bulk operations (sum, dot, scale, add, map) run over the whole buffer
+// in Java instead of element by element through the interpreter.
+class ReigaiBuffer {
+    private final DoubleBuffer data;
+
+    private ReigaiBuffer(ByteBuffer bytes) {
+        this.data = bytes.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    static ReigaiBuffer allocate(int size) {
+        return new ReigaiBuffer(ByteBuffer.allocateDirect(size * Double.BYTES));
+    }
+
+    // Changes to the buffer are written back to the file
+    static ReigaiBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size() / Double.BYTES;
+            if (size * Double.BYTES > Integer.MAX_VALUE) // too big for one mapping
+                throw new IOException(path + " is too large to map");
+            return new ReigaiBuffer(channel.map(FileChannel.MapMode.READ_WRITE, 0, size * Double.BYTES));
+        }
+    }
+
+    int size() {
+        return data.capacity();
+    }
+
+    double get(int index) {
+        return data.get(index);
+    }
+
+    void set(int index, double value) {
+        data.put(index, value);
+    }
+
+    ReigaiIterator iterator() { // sees elements set while it runs
+        return new ReigaiIterator() {
+            private int index = 0;
+
+            @Override
+            public boolean has_next() {
+                return index < size();
+            }
+
+            @Override
+            public Object next() {
+                return Numbers.of(get(index++));
+            }
+        };
+    }
+
+    double sum() {
+        double sum = 0;
+        for (int i = 0; i < data.capacity(); i++) {
+            sum += data.get(i);
+        }
+        return sum;
+    }
+
+    double dot(ReigaiBuffer other) { // over the shorter of the two
+        int size = Math.min(size(), other.size());
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += data.get(i) * other.data.get(i);
+        }
+        return sum;
+    }
+
+    void scale(double factor) {
+        for (int i = 0; i < data.capacity(); i++) {
+            data.put(i, data.get(i) * factor);
+        }
+    }
+
+    void add(ReigaiBuffer other) { // over the shorter of the two
+        int size = Math.min(size(), other.size());
+        for (int i = 0; i < size; i++) {
+            data.put(i, data.get(i) + other.data.get(i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<buffer of " + size() + ">";
+    }
+}
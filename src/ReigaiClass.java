@@ -1,15 +1,23 @@
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 class ReigaiClass implements ReigaiCallable {
     final String name;
     final ReigaiClass superclass;
     private final Map<String, ReigaiFunction> methods;
+    private final ReigaiClass[] ancestors; // from the root class down to this one
 
     ReigaiClass(String name, ReigaiClass superclass, Map<String, ReigaiFunction> methods) {
         this.name = name;
         this.superclass = superclass;
         this.methods = methods;
+
+        int depth = superclass == null ? 0 : superclass.ancestors.length;
+        ancestors = new ReigaiClass[depth + 1];
+        if (superclass != null)
+            System.arraycopy(superclass.ancestors, 0, ancestors, 0, depth);
+        ancestors[depth] = this;
     }
 
     @Override
@@ -39,6 +47,15 @@ class ReigaiClass implements ReigaiCallable {
         return null;
     }
 
+    Set<String> method_names() {
+        return methods.keySet();
+    }
+
+    boolean is_subclass_of(ReigaiClass other) { // or the class itself
+        int depth = other.ancestors.length - 1;
+        return depth < ancestors.length && ancestors[depth] == other;
+    }
+
     @Override
     public String toString() {
         return "<class " + name + ">";
@@ -0,0 +1,158 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// A file opened by open() or stdin(), for reading or for writing. Reading
+// goes a line at a time through a BufferedReader, so a for loop over a file
+// of any size holds one line at a time. Writes collect in a direct buffer
+// and go to the channel when it fills, on close(), or when the program
+// exits, whichever comes first.
+class ReigaiFile implements ReigaiIterator {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<ReigaiFile> unflushed = new LinkedHashSet<>();
+    private static ReigaiFile stdin = null;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (ReigaiFile file : unflushed.toArray(new ReigaiFile[0])) {
+                file.close();
+            }
+        }));
+    }
+
+    private final String name;
+    private final BufferedReader reader; // null if opened for writing
+    private final FileChannel channel; // null if opened for reading
+    private final ByteBuffer buffer;
+    private String next_line = null; // read ahead by has_next()
+    private boolean closed = false;
+
+    private ReigaiFile(String name, BufferedReader reader, FileChannel channel) {
+        this.name = name;
+        this.reader = reader;
+        this.channel = channel;
+        this.buffer = channel == null ? null : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        if (channel != null)
+            unflushed.add(this);
+    }
+
+    // mode is "r" to read, "w" to write over the file, "a" to add to its end
+    static ReigaiFile open(Path path, String mode) throws IOException {
+        switch (mode) {
+            case "r":
+                return new ReigaiFile(path.toString(), Files.newBufferedReader(path, Charset.defaultCharset()), null);
+            case "w":
+                return new ReigaiFile(path.toString(), null, FileChannel.open(path, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+            case "a":
+                return new ReigaiFile(path.toString(), null, FileChannel.open(path, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+            default:
+                return null;
+        }
+    }
+
+    static ReigaiFile stdin() {
+        if (stdin == null)
+            stdin = new ReigaiFile("stdin", new BufferedReader(new InputStreamReader(System.in)), null);
+        return stdin;
+    }
+
+    // The whole file at once, decoded straight from a mapping of it
+    static String read_all(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) // too big for one mapping
+                throw new IOException(path + " is too large to read at once");
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Charset.defaultCharset().decode(bytes).toString();
+        }
+    }
+
+    boolean is_readable() {
+        return reader != null && !closed;
+    }
+
+    boolean is_writable() {
+        return channel != null && !closed;
+    }
+
+    @Override
+    public boolean has_next() {
+        if (next_line == null && is_readable()) {
+            try {
+                next_line = reader.readLine();
+            } catch (IOException error) {
+                throw new RuntimeError(null, "Can't read " + name + ": " + error.getMessage());
+            }
+            if (next_line == null) // at the end, so a loop over open() doesn't leak it
+                close();
+        }
+        return next_line != null;
+    }
+
+    @Override
+    public Object next() { // the next line without its line break, nil at the end
+        if (!has_next())
+            return null;
+        String line = next_line;
+        next_line = null;
+        return line;
+    }
+
+    void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(Charset.defaultCharset());
+        if (bytes.length > buffer.remaining())
+            flush();
+        if (bytes.length > buffer.capacity()) {
+            write_fully(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        write_fully(buffer);
+        buffer.clear();
+    }
+
+    private void write_fully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    void close() { // errors are dropped, a script could do nothing about them
+        if (closed || this == stdin)
+            return;
+        closed = true;
+        try {
+            if (reader != null) {
+                reader.close();
+                return;
+            }
+            unflushed.remove(this);
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        } catch (IOException error) {
+            // dropped
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<file " + name + ">";
+    }
+}
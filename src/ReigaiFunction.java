@@ -1,7 +1,7 @@
 import java.util.List;
 
 class ReigaiFunction implements ReigaiCallable {
-    private final Stmt.Function declaration;
+    final Stmt.Function declaration;
     private final Environment closure;
     private final boolean is_initializer;
 
@@ -18,27 +18,46 @@ class ReigaiFunction implements ReigaiCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return invoke(interpreter, closure, arguments);
+    }
+
+    // Calls a method on instance without making the bound function first
+    Object call_method(Interpreter interpreter, ReigaiInstance instance, List<Object> arguments) {
+        return invoke(interpreter, this_environment(instance), arguments);
+    }
+
+    private Object invoke(Interpreter interpreter, Environment closure, List<Object> arguments) {
+        if (declaration.deferred != null) {
+            declaration.deferred.complete(declaration);
+        }
+
         Environment environment = new Environment(closure);
         for (int i = 0; i < declaration.params.size(); i++) {
             environment.define(declaration.params.get(i).lexeme, arguments.get(i));
         }
+        if (declaration.generator)
+            return new ReigaiGenerator(interpreter, declaration, environment);
 
         try {
             interpreter.execute_block(declaration.body, environment);
         } catch (Return ret) {
-            return is_initializer ? closure.get_at(0, "this") : ret.value;
+            return is_initializer ? closure.get_at(0, 0) : ret.value; // 'this' is slot 0 of the bound closure
         }
 
         if (is_initializer)
-            return closure.get_at(0, "this");
+            return closure.get_at(0, 0);
 
         return null;
     }
 
     ReigaiFunction bind(ReigaiInstance instance) {
+        return new ReigaiFunction(declaration, this_environment(instance), is_initializer);
+    }
+
+    private Environment this_environment(ReigaiInstance instance) {
         Environment environment = new Environment(closure);
         environment.define("this", instance);
-        return new ReigaiFunction(declaration, environment, is_initializer);
+        return environment;
     }
 
     @Override
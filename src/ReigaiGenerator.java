@@ -0,0 +1,133 @@
+import java.util.concurrent.SynchronousQueue;
+
+// What calling a function with 'yield' in it gives back. The body runs on a
+// thread of its own, with an interpreter of its own, and each 'yield' hands
+// its value over and waits until the next value is asked for. Only one of
+// the two threads ever runs at a time, so the state they share (globals,
+// classes) needs no locking.
+//
+// A for loop that stops walking a generator before it finishes calls
+// stop(), which unwinds the body from its 'yield' and ends the thread. The
+// generator gives no more values after that.
+class ReigaiGenerator implements ReigaiIterator {
+    private static final Object NIL = new Object(); // a queue can't hold null
+    private static final Object DONE = new Object();
+    private static final Object NONE = new Object();
+    private static final Object STOP = new Object();
+
+    // Thrown at a 'yield' to unwind the body once it is stopped; not a
+    // RuntimeError, so no 'catch' in the script sees it
+    private static class Stop extends RuntimeException {
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Interpreter caller;
+    private final Stmt.Function declaration;
+    private final Environment environment;
+    private final SynchronousQueue<Object> to_caller = new SynchronousQueue<>();
+    private final SynchronousQueue<Object> to_body = new SynchronousQueue<>();
+    private Thread thread = null;
+    private Object next = NONE; // yielded but not taken yet
+    private boolean done = false;
+
+    ReigaiGenerator(Interpreter caller, Stmt.Function declaration, Environment environment) {
+        this.caller = caller;
+        this.declaration = declaration;
+        this.environment = environment;
+    }
+
+    @Override
+    public boolean has_next() {
+        if (next == NONE && !done)
+            resume();
+        return !done;
+    }
+
+    @Override
+    public Object next() { // nil once finished
+        if (!has_next())
+            return null;
+        Object value = next;
+        next = NONE;
+        return value == NIL ? null : value;
+    }
+
+    // On the body's thread, for 'yield'
+    void yield_value(Object value) {
+        put(to_caller, value == null ? NIL : value);
+        if (take(to_body) == STOP)
+            throw new Stop();
+    }
+
+    // Ends a body parked at a 'yield' and waits for its thread to finish
+    void stop() {
+        if (thread == null || done)
+            return;
+        done = true;
+        next = NONE;
+        put(to_body, STOP);
+        take(to_caller);
+    }
+
+    private void resume() {
+        if (thread == null) {
+            thread = new Thread(null, this::run, "generator " + declaration.name.lexeme,
+                    CallStack.thread_stack_size(caller.call_stack.max_depth()));
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            put(to_body, NONE);
+        }
+
+        Object message = take(to_caller);
+        if (message == DONE) {
+            done = true;
+        } else if (message instanceof RuntimeException) {
+            done = true;
+            throw (RuntimeException) message;
+        } else if (message instanceof Error) { // a stack overflow, reported where it is rethrown
+            done = true;
+            throw (Error) message;
+        } else {
+            next = message;
+        }
+    }
+
+    private void run() {
+        Interpreter interpreter = new Interpreter(caller, this);
+        Object message = DONE;
+        try {
+            interpreter.execute_block(declaration.body, environment);
+        } catch (Return | Stop end) {
+            // 'return' ends the generator, a value is dropped
+        } catch (RuntimeException | Error error) {
+            message = error;
+        }
+        put(to_caller, message);
+    }
+
+    private void put(SynchronousQueue<Object> queue, Object message) {
+        try {
+            queue.put(message);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(declaration.name, "Generator interrupted.");
+        }
+    }
+
+    private Object take(SynchronousQueue<Object> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(declaration.name, "Generator interrupted.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<generator " + declaration.name.lexeme + ">";
+    }
+}
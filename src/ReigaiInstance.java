@@ -2,13 +2,17 @@ import java.util.HashMap;
 import java.util.Map;
 
 class ReigaiInstance {
-    private ReigaiClass cl;
+    final ReigaiClass cl;
     private final Map<String, Object> fields = new HashMap<>();
 
     ReigaiInstance(ReigaiClass cl) {
         this.cl = cl;
     }
 
+    boolean has_field(String name) {
+        return fields.containsKey(name);
+    }
+
     Object get(Token name) {
         if (fields.containsKey(name.lexeme)) {
             return fields.get(name.lexeme);
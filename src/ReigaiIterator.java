@@ -0,0 +1,25 @@
+// What 'for (x in ...)' walks over, one value at a time. Lists, buffers and
+// strings are walked by index and maps by a copy of their keys; generators
+// and objects with has_next() and next() make their values as they are
+// asked for.
+interface ReigaiIterator {
+    boolean has_next();
+
+    Object next();
+
+    static ReigaiIterator characters(String text) {
+        return new ReigaiIterator() {
+            private int index = 0;
+
+            @Override
+            public boolean has_next() {
+                return index < text.length();
+            }
+
+            @Override
+            public Object next() {
+                return String.valueOf(text.charAt(index++));
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+// The built-in list. While it holds only numbers the elements are kept in a
+// double[], 8 bytes each instead of a boxed number; the first element that
+// isn't a number moves them all to an Object[] for good. Numbers come back
+// out in the same form they went in, since that form only depends on the
+// double value (see Numbers).
+class ReigaiList {
+    private double[] numbers;
+    private Object[] objects = null;
+    private int size;
+
+    ReigaiList(int capacity) {
+        numbers = new double[Math.max(capacity, 4)];
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object get(int index) {
+        if (numbers != null)
+            return Numbers.of(numbers[index]);
+        return objects[index];
+    }
+
+    void set(int index, Object value) {
+        if (numbers != null) {
+            if (Numbers.is_number(value)) {
+                numbers[index] = Numbers.as_double(value);
+                return;
+            }
+            generalize();
+        }
+        objects[index] = value;
+    }
+
+    void add(Object value) {
+        int capacity = numbers != null ? numbers.length : objects.length;
+        if (size == capacity) {
+            if (numbers != null) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            } else {
+                objects = Arrays.copyOf(objects, size * 2);
+            }
+        }
+        size++;
+        set(size - 1, value);
+    }
+
+    ReigaiIterator iterator() { // sees elements added and removed while it runs
+        return new ReigaiIterator() {
+            private int index = 0;
+
+            @Override
+            public boolean has_next() {
+                return index < size;
+            }
+
+            @Override
+            public Object next() {
+                return get(index++);
+            }
+        };
+    }
+
+    Object remove_last() { // nil if empty
+        if (size == 0)
+            return null;
+        Object last = get(size - 1);
+        if (objects != null)
+            objects[size - 1] = null;
+        size--;
+        return last;
+    }
+
+    // Elements from, inclusive, to to, exclusive, clamped to the list
+    ReigaiList slice(long from, long to) {
+        int start = (int) Math.max(0, Math.min(from, size));
+        int end = (int) Math.max(start, Math.min(to, size));
+        ReigaiList slice = new ReigaiList(end - start);
+        if (numbers != null) {
+            System.arraycopy(numbers, start, slice.numbers, 0, end - start);
+        } else {
+            slice.numbers = null;
+            slice.objects = Arrays.copyOfRange(objects, start, Math.max(end, start + 4));
+        }
+        slice.size = end - start;
+        return slice;
+    }
+
+    private void generalize() {
+        objects = new Object[numbers.length];
+        for (int i = 0; i < size; i++) {
+            objects[i] = Numbers.of(numbers[i]);
+        }
+        numbers = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                text.append(", ");
+            text.append(get(i) == this ? "[...]" : Interpreter.stringify(get(i)));
+        }
+        return text.append("]").toString();
+    }
+}
@@ -0,0 +1,173 @@
+// The built-in map: open addressing with linear probing, and backward
+// shifting on removal so there are no tombstones. While every key is a
+// whole number the keys are kept unboxed in a long[]; the first key that
+// isn't moves them all to an Object[] for good.
+//
+// Keys compare like '==' does: numbers by value, strings by text, anything
+// else by identity. nil can't be a key. A slot is in use when its value
+// isn't null, so a nil value is stored as NIL.
+class ReigaiMap {
+    private static final Object NIL = new Object();
+
+    private long[] whole_keys;
+    private Object[] keys = null;
+    private Object[] values;
+    private int shift = 64 - 3; // takes the top bits of a hash as a slot
+    private int size = 0;
+
+    ReigaiMap() {
+        whole_keys = new long[8];
+        values = new Object[8];
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object get(Object key) { // nil if missing
+        int slot = find(Rope.flat(key));
+        return slot < 0 ? null : value_at(slot);
+    }
+
+    boolean contains(Object key) {
+        return find(Rope.flat(key)) >= 0;
+    }
+
+    void put(Object key, Object value) {
+        key = Rope.flat(key);
+        if (value == null)
+            value = NIL;
+        if (whole_keys != null && !(key instanceof Long))
+            generalize();
+        if ((size + 1) * 4 > values.length * 3)
+            resize(values.length * 2);
+
+        int mask = values.length - 1;
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (same(slot, key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        store(slot, key);
+        values[slot] = value;
+        size++;
+    }
+
+    Object remove(Object key) { // the value removed, nil if missing
+        int slot = find(Rope.flat(key));
+        if (slot < 0)
+            return null;
+        Object removed = value_at(slot);
+
+        // move back every entry after it that would no longer be found
+        int mask = values.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(key_at(next));
+            boolean reachable = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!reachable) {
+                store(hole, key_at(next));
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        if (keys != null)
+            keys[hole] = null;
+        size--;
+        return removed;
+    }
+
+    ReigaiList keys() { // in table order
+        ReigaiList list = new ReigaiList(size);
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null)
+                list.add(key_at(slot));
+        }
+        return list;
+    }
+
+    private int find(Object key) {
+        if (whole_keys != null && !(key instanceof Long))
+            return -1;
+        int mask = values.length - 1;
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (same(slot, key))
+                return slot;
+        }
+        return -1;
+    }
+
+    // Fibonacci hashing: runs of whole numbers land evenly spread out
+    private int slot(Object key) {
+        long bits = key instanceof Long ? (Long) key : key.hashCode();
+        return (int) ((bits * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private boolean same(int slot, Object key) {
+        if (whole_keys != null)
+            return whole_keys[slot] == (Long) key;
+        return keys[slot].equals(key);
+    }
+
+    private Object key_at(int slot) {
+        return whole_keys != null ? (Object) whole_keys[slot] : keys[slot];
+    }
+
+    private Object value_at(int slot) {
+        return values[slot] == NIL ? null : values[slot];
+    }
+
+    private void store(int slot, Object key) {
+        if (whole_keys != null) {
+            whole_keys[slot] = (Long) key;
+        } else {
+            keys[slot] = key;
+        }
+    }
+
+    private void generalize() {
+        keys = new Object[values.length];
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null)
+                keys[slot] = whole_keys[slot];
+        }
+        whole_keys = null;
+    }
+
+    private void resize(int capacity) {
+        long[] old_whole = whole_keys;
+        Object[] old_keys = keys;
+        Object[] old_values = values;
+
+        if (whole_keys != null) {
+            whole_keys = new long[capacity];
+        } else {
+            keys = new Object[capacity];
+        }
+        values = new Object[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        size = 0;
+        for (int slot = 0; slot < old_values.length; slot++) {
+            if (old_values[slot] != null)
+                put(old_whole != null ? (Object) old_whole[slot] : old_keys[slot], old_values[slot]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] == null)
+                continue;
+            if (text.length() > 1)
+                text.append(", ");
+            text.append(Interpreter.stringify(key_at(slot))).append(": ");
+            text.append(values[slot] == this ? "{...}" : Interpreter.stringify(value_at(slot)));
+        }
+        return text.append("}").toString();
+    }
+}
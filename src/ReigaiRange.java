@@ -0,0 +1,25 @@
+// range(start, end, step): the numbers from start up to, not including,
+// end (down to, for a negative step). Nothing is stored but the three
+// numbers; a for loop over a range counts in a double, see
+// Interpreter.run_range().
+class ReigaiRange {
+    final double start;
+    final double end;
+    final double step;
+
+    ReigaiRange(double start, double end, double step) {
+        this.start = start;
+        this.end = end;
+        this.step = step;
+    }
+
+    boolean contains(double counter) {
+        return step > 0 ? counter < end : counter > end;
+    }
+
+    @Override
+    public String toString() {
+        return "<range " + Interpreter.stringify(Numbers.of(start)) + " to " + Interpreter.stringify(Numbers.of(end))
+                + " by " + Interpreter.stringify(Numbers.of(step)) + ">";
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.List;
+
+// A struct declared with its fields listed up front. Calling it builds an
+// instance with the arguments as the fields, in order.
+class ReigaiStruct implements ReigaiCallable {
+    final String name;
+    final String[] fields; // interned names, so they can be compared with ==
+
+    ReigaiStruct(String name, String[] fields) {
+        this.name = name;
+        this.fields = fields;
+    }
+
+    int slot(Token name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(name.lexeme))
+                return i;
+        }
+        throw new RuntimeError(name, "Struct " + this.name + " has no field '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public int arity() {
+        return fields.length;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return new ReigaiStructInstance(this, arguments.toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "<struct " + name + ">";
+    }
+}
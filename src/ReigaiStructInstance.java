@@ -0,0 +1,44 @@
+// Fields are kept in an array in declaration order. Gets and sets are given
+// their slot by the Resolver when every struct puts the field at the same
+// slot, and otherwise remember the slot found on their first run; either
+// way it is checked against the field's name before it is used.
+class ReigaiStructInstance {
+    final ReigaiStruct struct;
+    private final Object[] values;
+
+    ReigaiStructInstance(ReigaiStruct struct, Object[] values) {
+        this.struct = struct;
+        this.values = values;
+    }
+
+    Object get(Expr.Get expr) {
+        int slot = expr.slot;
+        if (!has_slot(slot, expr.name)) {
+            slot = struct.slot(expr.name);
+            expr.slot = slot;
+        }
+        return values[slot];
+    }
+
+    void set(Expr.Set expr, Object value) {
+        int slot = expr.slot;
+        if (!has_slot(slot, expr.name)) {
+            slot = struct.slot(expr.name);
+            expr.slot = slot;
+        }
+        values[slot] = value;
+    }
+
+    Object get(Token name) { // for a field called as a function
+        return values[struct.slot(name)];
+    }
+
+    private boolean has_slot(int slot, Token name) {
+        return slot >= 0 && slot < values.length && struct.fields[slot] == name.lexeme;
+    }
+
+    @Override
+    public String toString() {
+        return "<instance of struct " + struct.name + ">";
+    }
+}
@@ -1,19 +1,43 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
+// Works out, for every local variable use, how many scopes up its
+// declaration is and which slot it has there. Locals get slots in
+// declaration order, the same order the interpreter defines them in.
+//
+// The hooks below (begin_scope, declare, variable, begin_function, ...) are
+// used by the visitor for a separate pass over the tree, and by the Parser
+// directly when it resolves while parsing (--single-pass).
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private Scope[] scopes = new Scope[16];
+    private int scope_count = 0;
     private FunctionType current_function = FunctionType.NONE;
     private ClassType current_class = ClassType.NONE;
+    private int loop_depth = 0;
+    private Map<String, Integer> field_slots = new HashMap<>(); // struct field name -> slot
+    Map<Stmt, Resolver> scopes_before = null; // for the debugger, scopes as each listed statement starts
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    Resolver() {
     }
 
-    private enum FunctionType {
+    // Snapshot of the scopes at a function whose body is deferred, so the
+    // body can be resolved later exactly as if it had been resolved now.
+    private Resolver(Resolver enclosing) {
+        this.scopes = new Scope[enclosing.scopes.length];
+        for (int i = 0; i < enclosing.scope_count; i++) {
+            scopes[i] = new Scope(enclosing.scopes[i]);
+        }
+        this.scope_count = enclosing.scope_count;
+        this.current_function = enclosing.current_function;
+        this.current_class = enclosing.current_class;
+        this.loop_depth = enclosing.loop_depth;
+        this.field_slots = enclosing.field_slots;
+    }
+
+    enum FunctionType {
         NONE,
         FUNCTION,
         INITIALIZER,
@@ -26,8 +50,36 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         SUBCLASS,
     }
 
+    private static class Scope {
+        final Map<String, Integer> slots;
+        boolean[] defined;
+        boolean[] lazy; // holds a LazyValue until first read
+
+        // state to restore when a function or class scope ends
+        FunctionType enclosing_function;
+        ClassType enclosing_class;
+        int enclosing_loop_depth;
+
+        Scope() {
+            slots = new HashMap<>();
+            defined = new boolean[8];
+            lazy = new boolean[8];
+        }
+
+        Scope(Scope scope) {
+            slots = new HashMap<>(scope.slots);
+            defined = scope.defined.clone();
+            lazy = scope.lazy.clone();
+            enclosing_function = scope.enclosing_function;
+            enclosing_class = scope.enclosing_class;
+            enclosing_loop_depth = scope.enclosing_loop_depth;
+        }
+    }
+
     void resolve(List<Stmt> statements) {
         for (Stmt statement : statements) {
+            if (scopes_before != null)
+                scopes_before.put(statement, snapshot());
             resolve(statement);
         }
     }
@@ -41,39 +93,32 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visit_class_stmt(Stmt.Class stmt) {
-        ClassType enclosing_class = current_class;
-        current_class = ClassType.CLASS;
-
-        declare(stmt.name);
-        define(stmt.name);
+    public Void visit_break_stmt(Stmt.Break stmt) {
+        break_stmt(stmt);
+        return null;
+    }
 
-        if (stmt.superclass != null) {
-            current_class = ClassType.SUBCLASS;
-            resolve(stmt.superclass);
-        }
+    @Override
+    public Void visit_breakpoint_stmt(Stmt.Breakpoint stmt) {
+        resolve(stmt.statement);
+        return null;
+    }
 
-        if (stmt.superclass != null) {
-            begin_scope();
-            scopes.peek().put("super", true);
-        }
+    @Override
+    public Void visit_continue_stmt(Stmt.Continue stmt) {
+        continue_stmt(stmt);
+        return null;
+    }
 
-        begin_scope();
-        scopes.peek().put("this", true);
+    @Override
+    public Void visit_class_stmt(Stmt.Class stmt) {
+        begin_class(stmt.name, stmt.superclass);
 
         for (Stmt.Function method : stmt.methods) {
-            FunctionType declaration = method.name.lexeme.equals("init") ? FunctionType.INITIALIZER
-                    : FunctionType.METHOD;
-            resolve_function(method, declaration);
-        }
-
-        end_scope();
-
-        if (stmt.superclass != null) {
-            end_scope();
+            resolve_function(method, method_type(method.name));
         }
 
-        current_class = enclosing_class;
+        end_class(stmt.superclass);
         return null;
     }
 
@@ -101,6 +146,37 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit_match_stmt(Stmt.Match stmt) {
+        resolve(stmt.subject);
+        for (Stmt arm : stmt.arms) {
+            resolve(arm);
+        }
+        if (stmt.else_branch != null)
+            resolve(stmt.else_branch);
+        return null;
+    }
+
+    @Override
+    public Void visit_try_stmt(Stmt.Try stmt) {
+        begin_scope();
+        resolve(stmt.body);
+        end_scope();
+
+        begin_scope();
+        declare(stmt.name);
+        define(stmt.name);
+        resolve(stmt.handler);
+        end_scope();
+        return null;
+    }
+
+    @Override
+    public Void visit_struct_stmt(Stmt.Struct stmt) {
+        struct_decl(stmt);
+        return null;
+    }
+
     @Override
     public Void visit_print_stmt(Stmt.Print stmt) {
         resolve(stmt.expression);
@@ -109,14 +185,8 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visit_return_stmt(Stmt.Return stmt) {
-        if (current_function == FunctionType.NONE) {
-            Reigai.error(stmt.keyword, "Can't return from top-level code.");
-        }
-
+        return_stmt(stmt);
         if (stmt.value != null) {
-            if (current_function == FunctionType.INITIALIZER) {
-                Reigai.error(stmt.keyword, "Can't return a value from an initializer.");
-            }
             resolve(stmt.value);
         }
         return null;
@@ -132,17 +202,51 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit_yield_stmt(Stmt.Yield stmt) {
+        yield_stmt(stmt);
+        if (stmt.value != null) {
+            resolve(stmt.value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit_forin_stmt(Stmt.ForIn stmt) {
+        resolve(stmt.iterable);
+        begin_scope();
+        declare(stmt.name);
+        define(stmt.name);
+        begin_loop();
+        resolve(stmt.body);
+        end_loop();
+        end_scope();
+        return null;
+    }
+
+    @Override
+    public Void visit_lazy_stmt(Stmt.Lazy stmt) {
+        declare(stmt.name);
+        resolve(stmt.initializer);
+        define_lazy(stmt.name);
+        return null;
+    }
+
     @Override
     public Void visit_while_stmt(Stmt.While stmt) {
         resolve(stmt.condition);
+        begin_loop();
         resolve(stmt.body);
+        end_loop();
+        if (stmt.increment != null)
+            resolve(stmt.increment);
         return null;
     }
 
     @Override
     public Void visit_assign_expr(Expr.Assign expr) {
         resolve(expr.value);
-        resolve_local(expr, expr.name);
+        assign(expr);
         return null;
     }
 
@@ -170,9 +274,42 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit_array_expr(Expr.Array expr) {
+        for (Expr element : expr.elements) {
+            resolve(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit_dict_expr(Expr.Dict expr) {
+        for (int i = 0; i < expr.keys.size(); i++) {
+            resolve(expr.keys.get(i));
+            resolve(expr.values.get(i));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit_index_expr(Expr.Index expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visit_indexset_expr(Expr.IndexSet expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        resolve(expr.value);
+        return null;
+    }
+
     @Override
     public Void visit_get_expr(Expr.Get expr) {
         resolve(expr.object);
+        expr.slot = field_slot(expr.name);
         return null;
     }
 
@@ -180,27 +317,19 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visit_set_expr(Expr.Set expr) {
         resolve(expr.value);
         resolve(expr.object);
+        expr.slot = field_slot(expr.name);
         return null;
     }
 
     @Override
     public Void visit_super_expr(Expr.Super expr) {
-        if (current_class == ClassType.NONE) {
-            Reigai.error(expr.keyword, "Can't use 'super' outside of a class.");
-        } else if (current_class != ClassType.SUBCLASS) {
-            Reigai.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
-        }
-        resolve_local(expr, expr.keyword);
+        super_expr(expr);
         return null;
     }
 
     @Override
     public Void visit_this_expr(Expr.This expr) {
-        if (current_class == ClassType.NONE) {
-            Reigai.error(expr.keyword, "Can't use 'this' outside of a class.");
-            return null;
-        }
-        resolve_local(expr, expr.keyword);
+        this_expr(expr);
         return null;
     }
 
@@ -224,11 +353,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visit_variable_expr(Expr.Variable expr) {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-            Reigai.error(expr.name, "Can't read local varaible in its own initializer.");
-        }
-
-        resolve_local(expr, expr.name);
+        variable(expr);
         return null;
     }
 
@@ -240,55 +365,245 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         expr.accept(this);
     }
 
-    private void begin_scope() {
-        scopes.push(new HashMap<String, Boolean>());
+    private void resolve_function(Stmt.Function function, FunctionType type) {
+        begin_function(type, function.params);
+        if (function.deferred != null) {
+            function.deferred.resolve_with(snapshot());
+        } else {
+            resolve(function.body);
+        }
+        end_function();
     }
 
-    private void end_scope() {
-        scopes.pop();
+    Resolver snapshot() {
+        return new Resolver(this);
+    }
+
+    List<String> local_names() { // innermost first, without the ones shadowed
+        List<String> names = new ArrayList<>();
+        for (int i = scope_count - 1; i >= 0; i--) {
+            for (String name : scopes[i].slots.keySet()) {
+                if (!names.contains(name))
+                    names.add(name);
+            }
+        }
+        return names;
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty())
+    void begin_scope() {
+        if (scope_count == scopes.length) {
+            scopes = Arrays.copyOf(scopes, scope_count * 2);
+        }
+        scopes[scope_count++] = new Scope();
+    }
+
+    void end_scope() {
+        scopes[--scope_count] = null;
+    }
+
+    void declare(Token name) {
+        if (scope_count == 0)
             return;
 
-        Map<String, Boolean> scope = scopes.peek();
+        Scope scope = scopes[scope_count - 1];
 
-        if (scope.containsKey(name.lexeme)) {
+        if (scope.slots.containsKey(name.lexeme)) {
             Reigai.error(name, "Variable with this name already exists in current scope.");
+            return;
         }
 
-        scope.put(name.lexeme, false);
+        int slot = scope.slots.size();
+        if (slot == scope.defined.length) {
+            scope.defined = Arrays.copyOf(scope.defined, slot * 2);
+            scope.lazy = Arrays.copyOf(scope.lazy, slot * 2);
+        }
+        scope.slots.put(name.lexeme, slot);
     }
 
-    private void define(Token name) {
-        if (scopes.isEmpty())
+    void define(Token name) {
+        if (scope_count == 0)
             return;
 
-        scopes.peek().put(name.lexeme, true);
+        Scope scope = scopes[scope_count - 1];
+        scope.defined[scope.slots.get(name.lexeme)] = true;
     }
 
-    private void resolve_local(Expr expr, Token name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
-            }
-        }
+    // Only reads of a local declared with 'lazy var' check for a LazyValue;
+    // lazy globals are found by the check for undefined ones (Environment)
+    void define_lazy(Token name) {
+        define(name);
+        if (scope_count == 0)
+            return;
+
+        Scope scope = scopes[scope_count - 1];
+        scope.lazy[scope.slots.get(name.lexeme)] = true;
     }
 
-    private void resolve_function(Stmt.Function function, FunctionType type) {
-        FunctionType enclosing_function = current_function;
-        current_function = type;
+    void begin_loop() {
+        loop_depth++;
+    }
+
+    void end_loop() {
+        loop_depth--;
+    }
 
+    // Opens the scope holding the parameters; the body shares it
+    void begin_function(FunctionType type, List<Token> params) {
         begin_scope();
-        for (Token param : function.params) {
+        Scope scope = scopes[scope_count - 1];
+        scope.enclosing_function = current_function;
+        scope.enclosing_loop_depth = loop_depth;
+
+        current_function = type;
+        loop_depth = 0; // loops outside a function can't be left from inside it
+
+        for (Token param : params) {
             declare(param);
             define(param);
         }
-        resolve(function.body);
+    }
+
+    void end_function() {
+        Scope scope = scopes[scope_count - 1];
+        current_function = scope.enclosing_function;
+        loop_depth = scope.enclosing_loop_depth;
+        end_scope();
+    }
+
+    static FunctionType method_type(Token name) {
+        return name.lexeme.equals("init") ? FunctionType.INITIALIZER : FunctionType.METHOD;
+    }
+
+    // Declares the class and opens the scopes holding 'super' and 'this'
+    void struct_decl(Stmt.Struct stmt) {
+        declare(stmt.name);
+        define(stmt.name);
+        for (int i = 0; i < stmt.fields.size(); i++) {
+            // a name two structs keep in different slots is looked up at run time
+            field_slots.merge(stmt.fields.get(i).lexeme, i, (a, b) -> a.equals(b) ? a : -1);
+        }
+    }
+
+    // The slot of every struct field of that name seen so far, or -1
+    int field_slot(Token name) {
+        return field_slots.getOrDefault(name.lexeme, -1);
+    }
+
+    void begin_class(Token name, Expr.Variable superclass) {
+        ClassType enclosing_class = current_class;
+        current_class = ClassType.CLASS;
+
+        declare(name);
+        define(name);
+
+        if (superclass != null) {
+            current_class = ClassType.SUBCLASS;
+            variable(superclass);
+
+            begin_scope();
+            declare_implicit("super");
+        }
+
+        begin_scope();
+        declare_implicit("this");
+        scopes[scope_count - 1].enclosing_class = enclosing_class;
+    }
+
+    void end_class(Expr.Variable superclass) {
+        current_class = scopes[scope_count - 1].enclosing_class;
         end_scope();
 
-        current_function = enclosing_function;
+        if (superclass != null) {
+            end_scope();
+        }
+    }
+
+    private void declare_implicit(String name) {
+        Scope scope = scopes[scope_count - 1];
+        scope.defined[scope.slots.size()] = true;
+        scope.slots.put(name, scope.slots.size());
+    }
+
+    void return_stmt(Stmt.Return stmt) {
+        if (current_function == FunctionType.NONE) {
+            Reigai.error(stmt.keyword, "Can't return from top-level code.");
+        }
+
+        if (stmt.value != null && current_function == FunctionType.INITIALIZER) {
+            Reigai.error(stmt.keyword, "Can't return a value from an initializer.");
+        }
+    }
+
+    void yield_stmt(Stmt.Yield stmt) {
+        if (current_function == FunctionType.NONE) {
+            Reigai.error(stmt.keyword, "Can't yield from top-level code.");
+        }
+
+        if (current_function == FunctionType.INITIALIZER) {
+            Reigai.error(stmt.keyword, "Can't yield from an initializer.");
+        }
+    }
+
+    void break_stmt(Stmt.Break stmt) {
+        if (loop_depth == 0) {
+            Reigai.error(stmt.keyword, "Can't use 'break' outside of a loop.");
+        }
+    }
+
+    void continue_stmt(Stmt.Continue stmt) {
+        if (loop_depth == 0) {
+            Reigai.error(stmt.keyword, "Can't use 'continue' outside of a loop.");
+        }
+    }
+
+    void variable(Expr.Variable expr) {
+        if (scope_count > 0) {
+            Scope scope = scopes[scope_count - 1];
+            Integer slot = scope.slots.get(expr.name.lexeme);
+            if (slot != null && !scope.defined[slot]) {
+                Reigai.error(expr.name, "Can't read local varaible in its own initializer.");
+            }
+        }
+
+        expr.depth = depth_of(expr.name.lexeme);
+        expr.slot = expr.depth >= 0 ? slot_of(expr.depth, expr.name.lexeme) : Symbols.intern(expr.name.lexeme);
+        expr.lazy = expr.depth >= 0 && scopes[scope_count - 1 - expr.depth].lazy[expr.slot];
+    }
+
+    void assign(Expr.Assign expr) {
+        expr.depth = depth_of(expr.name.lexeme);
+        expr.slot = expr.depth >= 0 ? slot_of(expr.depth, expr.name.lexeme) : Symbols.intern(expr.name.lexeme);
+    }
+
+    void this_expr(Expr.This expr) {
+        if (current_class == ClassType.NONE) {
+            Reigai.error(expr.keyword, "Can't use 'this' outside of a class.");
+            return;
+        }
+        expr.depth = depth_of("this");
+    }
+
+    void super_expr(Expr.Super expr) {
+        if (current_class == ClassType.NONE) {
+            Reigai.error(expr.keyword, "Can't use 'super' outside of a class.");
+        } else if (current_class != ClassType.SUBCLASS) {
+            Reigai.error(expr.keyword, "Can't use 'super' in a class with no superclass.");
+        }
+        expr.depth = depth_of("super");
+    }
+
+    // Number of scopes between the innermost one and the one declaring name,
+    // or -1 if it isn't declared in any of them and so must be a global
+    private int depth_of(String name) {
+        for (int i = scope_count - 1; i >= 0; i--) {
+            if (scopes[i].slots.containsKey(name)) {
+                return scope_count - 1 - i;
+            }
+        }
+        return -1;
+    }
+
+    private int slot_of(int depth, String name) {
+        return scopes[scope_count - 1 - depth].slots.get(name);
     }
 }
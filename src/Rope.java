@@ -0,0 +1,61 @@
+// A string built by '+', kept as a StringBuilder shared with the value it
+// was built from plus the length of its own prefix. 's = s + x' in a loop
+// appends x to the builder in place instead of copying s each time.
+//
+// Only a concatenation onto a rope that still ends where its builder ends
+// appends in place; any other starts a new builder, so no value ever sees
+// text added by another. The text is made into a String the first time it
+// is read (print, len, ==, match) and kept.
+class Rope {
+    static final int MIN_LENGTH = 32; // shorter results stay plain Strings
+
+    private final StringBuilder builder;
+    private final int length;
+    private String flat = null;
+
+    private Rope(StringBuilder builder) {
+        this.builder = builder;
+        this.length = builder.length();
+    }
+
+    // left + right, when they aren't both numbers
+    static Object concat(Object left, Object right) {
+        StringBuilder builder;
+        if (left instanceof Rope) {
+            Rope rope = (Rope) left;
+            builder = rope.builder;
+            if (builder.length() != rope.length) // extended by another value already
+                builder = new StringBuilder(rope.length * 2).append(builder, 0, rope.length);
+        } else if (left instanceof StringSlice) {
+            builder = new StringBuilder(((StringSlice) left).length() * 2);
+            ((StringSlice) left).append_to(builder);
+        } else {
+            builder = new StringBuilder(Numbers.text(left));
+        }
+
+        if (right instanceof Rope) {
+            builder.append(((Rope) right).builder, 0, ((Rope) right).length);
+        } else if (right instanceof StringSlice) {
+            ((StringSlice) right).append_to(builder);
+        } else {
+            builder.append(Numbers.text(right));
+        }
+        return builder.length() < MIN_LENGTH ? builder.toString() : new Rope(builder);
+    }
+
+    // The String for a rope or a string slice, anything else as it is
+    static Object flat(Object value) {
+        return value instanceof Rope || value instanceof StringSlice ? value.toString() : value;
+    }
+
+    int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null)
+            flat = builder.substring(0, length);
+        return flat;
+    }
+}
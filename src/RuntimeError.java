@@ -1,9 +1,29 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Errors are caught by try/catch in scripts as well as reported, so they are
+// built without a JVM stack trace. Instead each Reigai call the error leaves
+// adds itself to the trace on the way out, formatted only when reported.
 public class RuntimeError extends RuntimeException {
     final Token token;
+    private final List<ReigaiCallable> callees = new ArrayList<>();
+    private final List<Token> sites = new ArrayList<>();
 
     RuntimeError(Token token, String message) {
-        super(message);
+        super(message, null, false, false);
         this.token = token;
     }
 
+    void called_from(ReigaiCallable callee, Token site) {
+        callees.add(callee);
+        sites.add(site);
+    }
+
+    int trace_size() {
+        return sites.size();
+    }
+
+    String trace_line(int index) { // 0 is the innermost call
+        return "in " + callees.get(index) + " called from line " + sites.get(index).line;
+    }
 }
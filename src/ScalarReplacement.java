@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Replaces instances that never escape the block creating them by one local
+// per field, so they are never allocated. Applies to
+//
+//     var p = Point(a, b);
+//
+// in a local scope, when Point is a top-level class that is declared once
+// and never reassigned or shadowed, has no superclass, and whose init only
+// assigns fields from its parameters. If every later use of p in the block
+// is a field read or write, this becomes
+//
+//     Point; var p#0 = a; var p#1 = b; var p#x = p#0; var p#y = p#1;
+//
+// and p.x turns into p#x. Anything else done with p (passing it, returning
+// it, printing it, calling a method on it) counts as escaping and the
+// declaration is left alone. '#' can't appear in a name, so the new locals
+// never clash with the script's own.
+class ScalarReplacement extends AstTransformer {
+    private final Map<String, Stmt.Function> initializers = new HashMap<>();
+
+    ScalarReplacement(List<Stmt> program) {
+        Optimizer.Names names = new Optimizer.Names(program);
+
+        for (Stmt stmt : program) {
+            if (!(stmt instanceof Stmt.Class))
+                continue;
+            Stmt.Class cl = (Stmt.Class) stmt;
+            String name = cl.name.lexeme;
+            if (!names.is_fixed(name) || cl.superclass != null)
+                continue;
+
+            for (Stmt.Function method : cl.methods) {
+                if (method.name.lexeme.equals("init") && is_simple_initializer(method)) {
+                    initializers.put(name, method);
+                }
+            }
+        }
+    }
+
+    List<Stmt> run(List<Stmt> program) {
+        if (initializers.isEmpty())
+            return program;
+
+        // top-level variables are globals and may be seen from anywhere
+        List<Stmt> result = new ArrayList<>(program.size());
+        for (Stmt stmt : program) {
+            result.add(stmt instanceof Stmt.Var ? stmt : transform(stmt));
+        }
+        return result;
+    }
+
+    @Override
+    List<Stmt> transform(List<Stmt> statements) {
+        return replace_all(super.transform(statements));
+    }
+
+    private List<Stmt> replace_all(List<Stmt> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt stmt = statements.get(i);
+            Stmt.Function init = initializer_of(stmt);
+            if (init == null)
+                continue;
+
+            List<Stmt> replaced = replace((Stmt.Var) stmt, init, statements.subList(i + 1, statements.size()));
+            if (replaced != null) {
+                List<Stmt> result = new ArrayList<>(statements.subList(0, i));
+                result.addAll(replaced);
+                return result;
+            }
+        }
+        return statements;
+    }
+
+    private Stmt.Function initializer_of(Stmt stmt) {
+        if (!(stmt instanceof Stmt.Var))
+            return null;
+        Expr initializer = ((Stmt.Var) stmt).initializer;
+        if (!(initializer instanceof Expr.Call))
+            return null;
+        Expr callee = ((Expr.Call) initializer).callee;
+        if (!(callee instanceof Expr.Variable))
+            return null;
+
+        Stmt.Function init = initializers.get(((Expr.Variable) callee).name.lexeme);
+        if (init == null || init.params.size() != ((Expr.Call) initializer).arguments.size())
+            return null;
+        return init;
+    }
+
+    // The declaration and the rest of its block rewritten, or null if the
+    // instance escapes
+    private List<Stmt> replace(Stmt.Var declaration, Stmt.Function init, List<Stmt> rest) {
+        Expr.Call call = (Expr.Call) declaration.initializer;
+        String object = declaration.name.lexeme;
+        int line = declaration.name.line;
+
+        Set<String> fields = new HashSet<>();
+        for (Stmt stmt : init.body) {
+            fields.add(((Expr.Set) ((Stmt.Expression) stmt).expression).name.lexeme);
+        }
+
+        Fields uses = new Fields(object, fields);
+        for (Expr argument : call.arguments) {
+            uses.transform(argument);
+        }
+        List<Stmt> rewritten = uses.transform(rest);
+        if (uses.escapes)
+            return null;
+
+        List<Stmt> result = new ArrayList<>();
+        // still fails the same way if the class isn't defined yet
+        result.add(new Stmt.Expression(call.callee));
+
+        Map<String, Expr> params = new HashMap<>();
+        for (int i = 0; i < call.arguments.size(); i++) {
+            Token local = local(object, Integer.toString(i), line);
+            result.add(new Stmt.Var(local, call.arguments.get(i)));
+            params.put(init.params.get(i).lexeme, new Expr.Variable(local));
+        }
+
+        Optimizer.Parameters substitute = new Optimizer.Parameters(params);
+        Set<String> assigned = new HashSet<>();
+        for (Stmt stmt : init.body) {
+            Expr.Set set = (Expr.Set) ((Stmt.Expression) stmt).expression;
+            Token local = local(object, set.name.lexeme, line);
+            Expr value = substitute.transform(set.value);
+            if (assigned.add(set.name.lexeme)) {
+                result.add(new Stmt.Var(local, value));
+            } else {
+                result.add(new Stmt.Expression(new Expr.Assign(local, value)));
+            }
+        }
+
+        result.addAll(replace_all(rewritten));
+        return result;
+    }
+
+    private static Token local(String object, String field, int line) {
+        return new Token(TokenType.IDENTIFIER, object + "#" + field, null, line);
+    }
+
+    // init made only of 'this.field = value;' where value uses nothing but
+    // the parameters, so it means the same thing wherever it is copied to
+    private static boolean is_simple_initializer(Stmt.Function init) {
+        if (init.deferred != null)
+            return false;
+
+        Set<String> params = new HashSet<>();
+        for (Token param : init.params) {
+            params.add(param.lexeme);
+        }
+
+        for (Stmt stmt : init.body) {
+            if (!(stmt instanceof Stmt.Expression))
+                return false;
+            Expr expr = ((Stmt.Expression) stmt).expression;
+            if (!(expr instanceof Expr.Set) || !(((Expr.Set) expr).object instanceof Expr.This))
+                return false;
+            if (!Optimizer.uses_only(((Expr.Set) expr).value, params))
+                return false;
+        }
+        return true;
+    }
+
+    private static class Fields extends AstTransformer {
+        private final String object;
+        private final Set<String> fields;
+        boolean escapes = false;
+
+        Fields(String object, Set<String> fields) {
+            this.object = object;
+            this.fields = fields;
+        }
+
+        private boolean is_object(Expr expr) {
+            return expr instanceof Expr.Variable && ((Expr.Variable) expr).name.lexeme.equals(object);
+        }
+
+        private void declare(Token name) {
+            if (name.lexeme.equals(object)) // shadowed, too hard to follow
+                escapes = true;
+        }
+
+        @Override
+        public Expr visit_get_expr(Expr.Get expr) {
+            if (is_object(expr.object)) {
+                if (!fields.contains(expr.name.lexeme)) {
+                    escapes = true; // a method, bound to the instance
+                    return expr;
+                }
+                return new Expr.Variable(local(object, expr.name.lexeme, expr.name.line));
+            }
+            return super.visit_get_expr(expr);
+        }
+
+        @Override
+        public Expr visit_set_expr(Expr.Set expr) {
+            if (is_object(expr.object)) {
+                if (!fields.contains(expr.name.lexeme)) {
+                    escapes = true;
+                    return expr;
+                }
+                return new Expr.Assign(local(object, expr.name.lexeme, expr.name.line), transform(expr.value));
+            }
+            return super.visit_set_expr(expr);
+        }
+
+        @Override
+        public Expr visit_variable_expr(Expr.Variable expr) {
+            if (is_object(expr))
+                escapes = true;
+            return expr;
+        }
+
+        @Override
+        public Expr visit_assign_expr(Expr.Assign expr) {
+            declare(expr.name);
+            return super.visit_assign_expr(expr);
+        }
+
+        @Override
+        public Stmt visit_var_stmt(Stmt.Var stmt) {
+            declare(stmt.name);
+            return super.visit_var_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_lazy_stmt(Stmt.Lazy stmt) {
+            declare(stmt.name);
+            return super.visit_lazy_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_struct_stmt(Stmt.Struct stmt) {
+            declare(stmt.name);
+            return stmt;
+        }
+
+        @Override
+        public Stmt visit_try_stmt(Stmt.Try stmt) {
+            declare(stmt.name);
+            return super.visit_try_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_forin_stmt(Stmt.ForIn stmt) {
+            declare(stmt.name);
+            return super.visit_forin_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_function_stmt(Stmt.Function stmt) {
+            declare(stmt.name);
+            for (Token param : stmt.params) {
+                declare(param);
+            }
+            return super.visit_function_stmt(stmt);
+        }
+
+        @Override
+        public Stmt visit_class_stmt(Stmt.Class stmt) {
+            declare(stmt.name);
+            for (Stmt.Function method : stmt.methods) {
+                for (Token param : method.params) {
+                    declare(param);
+                }
+            }
+            return super.visit_class_stmt(stmt);
+        }
+    }
+}
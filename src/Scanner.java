@@ -1,46 +1,35 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
+// Scans straight out of a character buffer: tokens are recorded as offsets
+// into the buffer, keywords are recognised with a switch, and the only
+// strings created are interned identifier names.
 class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private static final Map<String, TokenType> keywords;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    private final char[] source;
+    private final int length;
+    private final TokenBuffer tokens;
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", TokenType.AND);
-        keywords.put("or", TokenType.OR);
-        keywords.put("class", TokenType.CLASS);
-        keywords.put("this", TokenType.THIS);
-        keywords.put("super", TokenType.SUPER);
-        keywords.put("fun", TokenType.FUN);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("while", TokenType.WHILE);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("var", TokenType.VAR);
-        keywords.put("nil", TokenType.NIL);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("print", TokenType.PRINT);
+    Scanner(char[] source, int length) {
+        this.source = source;
+        this.length = length;
+        this.tokens = new TokenBuffer(source, length / 4);
     }
 
     Scanner(String source) {
-        this.source = source;
+        this(source.toCharArray(), source.length());
     }
 
-    List<Token> scan_tokens() {
+    TokenBuffer scan_tokens() {
         while (!at_end()) {
             start = current;
             scan_token();
         }
-        tokens.add(new Token(TokenType.EOF, "", null, line));
+        tokens.add(TokenType.EOF, current, 0, line, 0);
         return tokens;
     }
 
@@ -60,6 +49,12 @@ class Scanner {
             case '}':
                 add_token(TokenType.RIGHT_BRACE);
                 break;
+            case '[':
+                add_token(TokenType.LEFT_BRACKET);
+                break;
+            case ']':
+                add_token(TokenType.RIGHT_BRACKET);
+                break;
             case ',':
                 add_token(TokenType.COMMA);
                 break;
@@ -75,6 +70,9 @@ class Scanner {
             case ';':
                 add_token(TokenType.SEMICOLON);
                 break;
+            case ':':
+                add_token(TokenType.COLON);
+                break;
             case '*':
                 add_token(TokenType.STAR);
                 break;
@@ -136,13 +134,98 @@ class Scanner {
             advance();
         }
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            type = TokenType.IDENTIFIER;
+        TokenType type = keyword();
+        if (type == TokenType.IDENTIFIER) {
+            tokens.add(type, start, current - start, line, Symbols.intern(source, start, current - start));
+        } else {
+            add_token(type);
+        }
+    }
+
+    private TokenType keyword() {
+        switch (source[start]) {
+            case 'a':
+                return check_keyword("and", TokenType.AND);
+            case 'b':
+                return check_keyword("break", TokenType.BREAK);
+            case 'c':
+                if (current - start > 1) {
+                    switch (source[start + 1]) {
+                        case 'a':
+                            return check_keyword("catch", TokenType.CATCH);
+                        case 'l':
+                            return check_keyword("class", TokenType.CLASS);
+                        case 'o':
+                            return check_keyword("continue", TokenType.CONTINUE);
+                    }
+                }
+                break;
+            case 'e':
+                return check_keyword("else", TokenType.ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source[start + 1]) {
+                        case 'a':
+                            return check_keyword("false", TokenType.FALSE);
+                        case 'o':
+                            return check_keyword("for", TokenType.FOR);
+                        case 'u':
+                            return check_keyword("fun", TokenType.FUN);
+                    }
+                }
+                break;
+            case 'i':
+                if (current - start > 1 && source[start + 1] == 'n')
+                    return check_keyword("in", TokenType.IN);
+                return check_keyword("if", TokenType.IF);
+            case 'l':
+                return check_keyword("lazy", TokenType.LAZY);
+            case 'm':
+                return check_keyword("match", TokenType.MATCH);
+            case 'n':
+                return check_keyword("nil", TokenType.NIL);
+            case 'o':
+                return check_keyword("or", TokenType.OR);
+            case 'p':
+                return check_keyword("print", TokenType.PRINT);
+            case 'r':
+                return check_keyword("return", TokenType.RETURN);
+            case 's':
+                if (current - start > 1 && source[start + 1] == 't')
+                    return check_keyword("struct", TokenType.STRUCT);
+                return check_keyword("super", TokenType.SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (source[start + 1]) {
+                        case 'h':
+                            return check_keyword("this", TokenType.THIS);
+                        case 'r':
+                            if (current - start > 2 && source[start + 2] == 'y')
+                                return check_keyword("try", TokenType.TRY);
+                            return check_keyword("true", TokenType.TRUE);
+                    }
+                }
+                break;
+            case 'v':
+                return check_keyword("var", TokenType.VAR);
+            case 'w':
+                return check_keyword("while", TokenType.WHILE);
+            case 'y':
+                return check_keyword("yield", TokenType.YIELD);
         }
+        return TokenType.IDENTIFIER;
+    }
 
-        add_token(type);
+    private TokenType check_keyword(String keyword, TokenType type) {
+        if (current - start != keyword.length()) {
+            return TokenType.IDENTIFIER;
+        }
+        for (int i = 1; i < keyword.length(); i++) {
+            if (source[start + i] != keyword.charAt(i)) {
+                return TokenType.IDENTIFIER;
+            }
+        }
+        return type;
     }
 
     private void string() {
@@ -160,8 +243,7 @@ class Scanner {
 
         advance(); // closing " character
 
-        String literal = source.substring(start + 1, current - 1); // skip " characters
-        add_token(TokenType.STRING, literal);
+        add_token(TokenType.STRING); // the value is cut out of the buffer when the parser asks for it
     }
 
     private void number() {
@@ -177,15 +259,45 @@ class Scanner {
             }
         }
 
-        add_token(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+        tokens.add(TokenType.NUMBER, start, current - start, line, tokens.add_number(number_value()));
+    }
+
+    private double number_value() {
+        // Up to 15 digits and 22 decimal places both fit a double exactly, so
+        // one division gives the correctly rounded result without a substring.
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean fraction = false;
+        for (int i = start; i < current; i++) {
+            char c = source[i];
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (mantissa == 0 && c == '0') { // leading zeros are not significant
+                if (fraction)
+                    decimals++;
+                continue;
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            digits++;
+            if (fraction)
+                decimals++;
+        }
 
+        if (digits <= 15 && decimals <= 22) {
+            return decimals == 0 ? mantissa : mantissa / POWERS_OF_TEN[decimals];
+        }
+        return Double.parseDouble(new String(source, start, current - start));
     }
 
+
     private boolean match(char expected) {
         if (at_end()) {
             return false;
         }
-        if (source.charAt(current) != expected) {
+        if (source[current] != expected) {
             return false;
         }
         current++;
@@ -196,14 +308,14 @@ class Scanner {
         if (at_end()) {
             return '\0';
         }
-        return source.charAt(current);
+        return source[current];
     }
 
     private char peek_next() {
-        if (current + 1 >= source.length()) {
+        if (current + 1 >= length) {
             return '\0';
         }
-        return source.charAt(current + 1);
+        return source[current + 1];
     }
 
     private boolean is_digit(char c) {
@@ -219,19 +331,14 @@ class Scanner {
     }
 
     boolean at_end() {
-        return current >= source.length();
+        return current >= length;
     }
 
     private char advance() { // Consume next character
-        return source.charAt(current++);
+        return source[current++];
     }
 
     private void add_token(TokenType type) {
-        add_token(type, null);
-    }
-
-    private void add_token(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        tokens.add(type, start, current - start, line, 0);
     }
 }
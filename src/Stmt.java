@@ -3,14 +3,23 @@ import java.util.List;
 abstract class Stmt {
     interface Visitor<R> {
         R visit_block_stmt(Block stmt);
+        R visit_break_stmt(Break stmt);
+        R visit_breakpoint_stmt(Breakpoint stmt);
         R visit_class_stmt(Class stmt);
+        R visit_continue_stmt(Continue stmt);
         R visit_expression_stmt(Expression stmt);
+        R visit_forin_stmt(ForIn stmt);
         R visit_function_stmt(Function stmt);
         R visit_if_stmt(If stmt);
+        R visit_lazy_stmt(Lazy stmt);
+        R visit_match_stmt(Match stmt);
         R visit_print_stmt(Print stmt);
         R visit_return_stmt(Return stmt);
+        R visit_struct_stmt(Struct stmt);
+        R visit_try_stmt(Try stmt);
         R visit_var_stmt(Var stmt);
         R visit_while_stmt(While stmt);
+        R visit_yield_stmt(Yield stmt);
     }
     static class Block extends Stmt {
         Block(List<Stmt> statements) {
@@ -24,6 +33,32 @@ abstract class Stmt {
 
         final List<Stmt> statements;
     }
+    static class Break extends Stmt {
+        Break(Token keyword) {
+            this.keyword = keyword;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_break_stmt(this);
+        }
+
+        final Token keyword;
+    }
+    static class Breakpoint extends Stmt {
+        Breakpoint(Stmt statement, int line) {
+            this.statement = statement;
+            this.line = line;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_breakpoint_stmt(this);
+        }
+
+        final Stmt statement;
+        final int line;
+    }
     static class Class extends Stmt {
         Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
             this.name = name;
@@ -40,6 +75,18 @@ abstract class Stmt {
         final Expr.Variable superclass;
         final List<Stmt.Function> methods;
     }
+    static class Continue extends Stmt {
+        Continue(Token keyword) {
+            this.keyword = keyword;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_continue_stmt(this);
+        }
+
+        final Token keyword;
+    }
     static class Expression extends Stmt {
         Expression(Expr expression) {
             this.expression = expression;
@@ -52,11 +99,30 @@ abstract class Stmt {
 
         final Expr expression;
     }
+    static class ForIn extends Stmt {
+        ForIn(Token keyword, Token name, Expr iterable, Stmt body) {
+            this.keyword = keyword;
+            this.name = name;
+            this.iterable = iterable;
+            this.body = body;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_forin_stmt(this);
+        }
+
+        final Token keyword;
+        final Token name;
+        final Expr iterable;
+        final Stmt body;
+    }
     static class Function extends Stmt {
-        Function(Token name, List<Token> params, List<Stmt> body) {
+        Function(Token name, List<Token> params, List<Stmt> body, DeferredBody deferred) {
             this.name = name;
             this.params = params;
             this.body = body;
+            this.deferred = deferred;
         }
 
         @Override
@@ -67,6 +133,8 @@ abstract class Stmt {
         final Token name;
         final List<Token> params;
         final List<Stmt> body;
+        final DeferredBody deferred;
+        boolean generator = false;
     }
     static class If extends Stmt {
         If(Expr condition, Stmt then_branch, Stmt else_branch) {
@@ -84,6 +152,40 @@ abstract class Stmt {
         final Stmt then_branch;
         final Stmt else_branch;
     }
+    static class Lazy extends Stmt {
+        Lazy(Token name, Expr initializer) {
+            this.name = name;
+            this.initializer = initializer;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_lazy_stmt(this);
+        }
+
+        final Token name;
+        final Expr initializer;
+    }
+    static class Match extends Stmt {
+        Match(Token keyword, Expr subject, List<Stmt> arms, Stmt else_branch, MatchTable table) {
+            this.keyword = keyword;
+            this.subject = subject;
+            this.arms = arms;
+            this.else_branch = else_branch;
+            this.table = table;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_match_stmt(this);
+        }
+
+        final Token keyword;
+        final Expr subject;
+        final List<Stmt> arms;
+        final Stmt else_branch;
+        final MatchTable table;
+    }
     static class Print extends Stmt {
         Print(Expr expression) {
             this.expression = expression;
@@ -110,6 +212,38 @@ abstract class Stmt {
         final Token keyword;
         final Expr value;
     }
+    static class Struct extends Stmt {
+        Struct(Token name, List<Token> fields) {
+            this.name = name;
+            this.fields = fields;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_struct_stmt(this);
+        }
+
+        final Token name;
+        final List<Token> fields;
+    }
+    static class Try extends Stmt {
+        Try(Token keyword, List<Stmt> body, Token name, List<Stmt> handler) {
+            this.keyword = keyword;
+            this.body = body;
+            this.name = name;
+            this.handler = handler;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_try_stmt(this);
+        }
+
+        final Token keyword;
+        final List<Stmt> body;
+        final Token name;
+        final List<Stmt> handler;
+    }
     static class Var extends Stmt {
         Var(Token name, Expr initializer) {
             this.name = name;
@@ -125,9 +259,10 @@ abstract class Stmt {
         final Expr initializer;
     }
     static class While extends Stmt {
-        While(Expr condition, Stmt body) {
+        While(Expr condition, Stmt body, Expr increment) {
             this.condition = condition;
             this.body = body;
+            this.increment = increment;
         }
 
         @Override
@@ -137,6 +272,22 @@ abstract class Stmt {
 
         final Expr condition;
         final Stmt body;
+        final Expr increment;
+        InductionVariable induction = null;
+    }
+    static class Yield extends Stmt {
+        Yield(Token keyword, Expr value) {
+            this.keyword = keyword;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor){
+                return visitor.visit_yield_stmt(this);
+        }
+
+        final Token keyword;
+        final Expr value;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
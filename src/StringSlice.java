@@ -0,0 +1,83 @@
+// Part of a string, kept as the string it was cut from plus where the part
+// starts and how long it is, so substr(), split() and trim() don't copy any
+// text. '+' appends straight from the parent, and '==' compares in place.
+// The text is copied out the first time it is needed as a String on its own
+// (print, map keys, match) and kept.
+//
+// A slice keeps its whole parent alive, so short results, which cost about
+// as much to copy as to point at, stay plain Strings.
+class StringSlice implements CharSequence {
+    private final String parent;
+    private final int offset;
+    private final int length;
+    private String flat = null;
+
+    private StringSlice(String parent, int offset, int length) {
+        this.parent = parent;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // The characters of text from from, inclusive, to to, exclusive
+    static CharSequence of(CharSequence text, int from, int to) {
+        if (text instanceof StringSlice) {
+            StringSlice slice = (StringSlice) text;
+            return of(slice.parent, slice.offset + from, slice.offset + to);
+        }
+        String string = text.toString();
+        if (to - from < Rope.MIN_LENGTH || to - from == string.length())
+            return string.substring(from, to);
+        return new StringSlice(string, from, to - from);
+    }
+
+    // Whether a, a slice, and b hold the same text
+    static boolean same_text(StringSlice a, Object b) {
+        if (b instanceof Rope)
+            b = b.toString();
+        if (b instanceof String) {
+            String text = (String) b;
+            return text.length() == a.length && a.parent.regionMatches(a.offset, text, 0, a.length);
+        }
+        if (b instanceof StringSlice) {
+            StringSlice slice = (StringSlice) b;
+            return slice.length == a.length && a.parent.regionMatches(a.offset, slice.parent, slice.offset, a.length);
+        }
+        return false;
+    }
+
+    // Where part first starts, searching the slice only, or -1
+    int index_of(String part) {
+        int last = offset + length - part.length();
+        for (int i = offset; i <= last; i++) {
+            if (parent.startsWith(part, i))
+                return i - offset;
+        }
+        return -1;
+    }
+
+    void append_to(StringBuilder builder) {
+        builder.append(parent, offset, offset + length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return parent.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return of(this, start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null)
+            flat = parent.substring(offset, offset + length);
+        return flat;
+    }
+}
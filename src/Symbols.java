@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+// Interning table for identifier names. The scanner looks names up straight
+// from the source buffer, so a String is only created the first time a name
+// is seen, and every later occurrence shares it.
+// Each name also gets a small integer id, stable for the whole process,
+// which is also the slot of the global of that name.
+class Symbols {
+    private static String[] names = new String[256];
+    private static int[] hashes = new int[256];
+    private static int[] table = new int[512]; // open addressing, holds id + 1, 0 is empty
+    private static int count = 0;
+
+    static { // natives get the first ids, which are their global slots
+        for (String name : NativeFunctions.NAMES) {
+            intern(name);
+        }
+    }
+
+    static int intern(char[] source, int start, int length) {
+        int hash = hash(source, start, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return add(new String(source, start, length), hash, slot);
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && same(names[id], source, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    static int intern(String name) {
+        char[] chars = name.toCharArray();
+        return intern(chars, 0, chars.length);
+    }
+
+    static String name(int id) {
+        return names[id];
+    }
+
+    static int count() {
+        return count;
+    }
+
+    private static int add(String name, int hash, int slot) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        int id = count++;
+        names[id] = name;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+
+        if (count * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private static void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int hash(char[] source, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean same(String name, char[] source, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.Arrays;
+
+// Tokens produced by the scanner, stored as parallel arrays of type, start,
+// length and line instead of one object per token. Token objects are only
+// built for the tokens the parser actually keeps in the tree.
+class TokenBuffer {
+    private static final TokenType[] types_by_ordinal = TokenType.values();
+    private static final String[] lexemes = new String[types_by_ordinal.length];
+
+    static {
+        lexemes[TokenType.LEFT_PAREN.ordinal()] = "(";
+        lexemes[TokenType.RIGHT_PAREN.ordinal()] = ")";
+        lexemes[TokenType.LEFT_BRACE.ordinal()] = "{";
+        lexemes[TokenType.RIGHT_BRACE.ordinal()] = "}";
+        lexemes[TokenType.LEFT_BRACKET.ordinal()] = "[";
+        lexemes[TokenType.RIGHT_BRACKET.ordinal()] = "]";
+        lexemes[TokenType.COMMA.ordinal()] = ",";
+        lexemes[TokenType.DOT.ordinal()] = ".";
+        lexemes[TokenType.SEMICOLON.ordinal()] = ";";
+        lexemes[TokenType.COLON.ordinal()] = ":";
+        lexemes[TokenType.MINUS.ordinal()] = "-";
+        lexemes[TokenType.PLUS.ordinal()] = "+";
+        lexemes[TokenType.SLASH.ordinal()] = "/";
+        lexemes[TokenType.STAR.ordinal()] = "*";
+        lexemes[TokenType.MOD.ordinal()] = "%";
+        lexemes[TokenType.EQUAL.ordinal()] = "=";
+        lexemes[TokenType.EQUAL_EQUAL.ordinal()] = "==";
+        lexemes[TokenType.BANG_EQUAL.ordinal()] = "!=";
+        lexemes[TokenType.GREATER.ordinal()] = ">";
+        lexemes[TokenType.GREATER_EQUAL.ordinal()] = ">=";
+        lexemes[TokenType.LESSER.ordinal()] = "<";
+        lexemes[TokenType.LESSER_EQUAL.ordinal()] = "<=";
+        lexemes[TokenType.BANG.ordinal()] = "!";
+        lexemes[TokenType.EOF.ordinal()] = "";
+        for (TokenType type : types_by_ordinal) { // keywords are spelt like their type
+            if (lexemes[type.ordinal()] == null)
+                lexemes[type.ordinal()] = type.name().toLowerCase();
+        }
+    }
+
+    private final char[] source;
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] values; // symbol id of identifiers, index into numbers for numbers
+    private double[] numbers = new double[16];
+    private Token[] materialized;
+    private int count = 0;
+    private int number_count = 0;
+
+    TokenBuffer(char[] source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 16);
+        types = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        values = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int length, int line, int value) {
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        types[count] = type.ordinal();
+        starts[count] = start;
+        lengths[count] = length;
+        lines[count] = line;
+        values[count] = value;
+        count++;
+    }
+
+    int add_number(double value) { // returns the value to store with the token
+        if (number_count == numbers.length) {
+            numbers = Arrays.copyOf(numbers, number_count * 2);
+        }
+        numbers[number_count] = value;
+        return number_count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    TokenType type(int index) {
+        return types_by_ordinal[types[index]];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    Object literal(int index) {
+        switch (type(index)) {
+            case NUMBER:
+                return Numbers.of(numbers[values[index]]);
+            case STRING:
+                return new String(source, starts[index] + 1, lengths[index] - 2); // skip " characters
+            default:
+                return null;
+        }
+    }
+
+    Token token(int index) {
+        if (materialized == null) {
+            materialized = new Token[count];
+        }
+        Token token = materialized[index];
+        if (token == null) {
+            token = new Token(type(index), lexeme(index), literal(index), lines[index]);
+            materialized[index] = token;
+        }
+        return token;
+    }
+
+    private String lexeme(int index) {
+        TokenType type = type(index);
+        switch (type) {
+            case IDENTIFIER:
+                return Symbols.name(values[index]);
+            case NUMBER:
+            case STRING:
+                return new String(source, starts[index], lengths[index]);
+            default:
+                return lexemes[type.ordinal()];
+        }
+    }
+}
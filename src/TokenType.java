@@ -1,9 +1,10 @@
 enum TokenType {
     LEFT_PAREN, RIGHT_PAREN, // Parenthesis
     LEFT_BRACE, RIGHT_BRACE, // Braces
-    COMMA, DOT, SEMICOLON, // Punctuation
+    LEFT_BRACKET, RIGHT_BRACKET, // Brackets
+    COMMA, DOT, SEMICOLON, COLON, // Punctuation
     MINUS, PLUS, SLASH, STAR, MOD, // Math, Assignment
-    EQUAL, VAR, // Assignment / Initialization
+    EQUAL, VAR, LAZY, // Assignment / Initialization
 
     // Comparison Operators
     EQUAL_EQUAL,
@@ -19,14 +20,17 @@ enum TokenType {
     AND, OR, BANG,
 
     // Program Flow
-    IF, ELSE,
-    WHILE, FOR,
+    IF, ELSE, MATCH,
+    WHILE, FOR, IN,
+    BREAK, CONTINUE,
+    TRY, CATCH,
 
     // Functions
-    FUN, RETURN,
+    FUN, RETURN, YIELD,
 
     // Object oriented
     CLASS, SUPER, THIS,
+    STRUCT,
 
     // Misc
     PRINT,
@@ -1,26 +1,131 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 public class Reigai {
 
-    private static final Interpreter interpreter = new Interpreter();
+    private static Interpreter interpreter;
     static boolean had_error = false;
     static boolean had_runtime_error = false;
+    private static final int MAX_TRACE = 20; // calls printed with a runtime error
+    private static boolean lazy_bodies = false;
+    private static boolean single_pass = false;
+    private static boolean optimize = false;
+    private static boolean regex_stats = false;
+    private static Path profile_out = null;
+    private static Path profile_in = null;
+    private static final List<Integer> break_lines = new ArrayList<>();
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: <executable> [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            run_file(args[0]);
-        } else {
-            run_prompt();
+        String script = null;
+        boolean bench_parse = false;
+        boolean strict = false;
+        int max_depth = CallStack.DEFAULT_MAX_DEPTH;
+
+        for (String arg : args) {
+            if (arg.equals("--bench-parse")) {
+                bench_parse = true;
+            } else if (arg.equals("--lazy")) {
+                lazy_bodies = true;
+            } else if (arg.equals("--strict")) {
+                strict = true;
+            } else if (arg.equals("--single-pass")) {
+                single_pass = true;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--regex-stats")) {
+                regex_stats = true;
+            } else if (arg.startsWith("--profile-out=")) {
+                profile_out = Paths.get(arg.substring("--profile-out=".length()));
+            } else if (arg.startsWith("--profile-in=")) {
+                profile_in = Paths.get(arg.substring("--profile-in=".length()));
+            } else if (arg.startsWith("--break=")) {
+                break_lines.add(parse_count(arg.substring("--break=".length())));
+            } else if (arg.startsWith("--max-depth=")) {
+                max_depth = parse_count(arg.substring("--max-depth=".length()));
+                if (max_depth > CallStack.MAX_DEPTH_LIMIT)
+                    usage();
+            } else if (arg.startsWith("--") || script != null) {
+                usage();
+            } else {
+                script = arg;
+            }
+        }
+
+        if (strict) // every error is reported before anything runs
+            lazy_bodies = false;
+        if (profile_out != null || profile_in != null) { // profiles cover the whole tree
+            lazy_bodies = false;
+            optimize = profile_out == null;
+        }
+        if (!break_lines.isEmpty()) { // the debugger works on the tree as written
+            lazy_bodies = false;
+            single_pass = false;
+            optimize = false;
+            profile_out = null;
         }
+
+        if (bench_parse) {
+            if (script == null)
+                usage();
+            bench_parse(script);
+            return;
+        }
+
+        interpreter = new Interpreter(max_depth);
+
+        // Scripts run on their own thread so the JVM stack can be sized to
+        // the call depth limit instead of whatever -Xss the JVM started with.
+        final String path = script;
+        Thread runner = new Thread(null, () -> {
+            try {
+                if (path != null) {
+                    run_file(path);
+                } else {
+                    run_prompt();
+                }
+            } catch (IOException error) {
+                System.err.println(error.getMessage());
+                System.exit(74);
+            }
+        }, "reigai", CallStack.thread_stack_size(max_depth));
+        runner.setUncaughtExceptionHandler((thread, error) -> { // a bug in the interpreter itself
+            error.printStackTrace();
+            System.exit(70);
+        });
+        runner.start();
+        try {
+            runner.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void usage() {
+        System.out.println(
+                "Usage: <executable> [--lazy] [--strict] [--single-pass] [--optimize] [--profile-out=file] [--profile-in=file] [--break=line]... [--max-depth=n] [--regex-stats] [--bench-parse] [script]");
+        System.exit(64);
+    }
+
+    private static int parse_count(String text) {
+        try {
+            int count = Integer.parseInt(text);
+            if (count > 0)
+                return count;
+        } catch (NumberFormatException error) {
+        }
+        usage();
+        return 0;
     }
 
     private static void run_file(String path) throws IOException {
@@ -28,8 +133,9 @@ public class Reigai {
             System.exit(65);
         }
 
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        run(read_source(path), true);
+        if (regex_stats)
+            System.err.println(PatternCache.stats());
 
         if (had_error)
             System.exit(65);
@@ -47,28 +153,97 @@ public class Reigai {
             if (line == null) {
                 break;
             }
-            run(line);
+            run(CharBuffer.wrap(line.toCharArray()), false);
             had_error = false;
         }
     }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scan_tokens();
+    // Scans, parses and resolves a script repeatedly and reports the best time
+    // of each phase, to measure front end throughput without running it.
+    private static void bench_parse(String path) throws IOException {
+        CharBuffer source = read_source(path);
+        final int runs = 20;
 
-        Parser parser = new Parser(tokens);
+        long best_scan = Long.MAX_VALUE;
+        long best_parse = Long.MAX_VALUE;
+        long best_resolve = Long.MAX_VALUE;
+        int token_count = 0;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            TokenBuffer tokens = new Scanner(source.array(), source.limit()).scan_tokens();
+            long scanned = System.nanoTime();
+            Resolver resolver = new Resolver();
+            List<Stmt> statements = new Parser(tokens, lazy_bodies, single_pass ? resolver : null).parse();
+            long parsed = System.nanoTime();
+            if (!single_pass)
+                resolver.resolve(statements);
+            long resolved = System.nanoTime();
+
+            best_scan = Math.min(best_scan, scanned - start);
+            best_parse = Math.min(best_parse, parsed - scanned);
+            best_resolve = Math.min(best_resolve, resolved - parsed);
+            token_count = tokens.size();
+        }
+
+        System.out.printf("%d tokens, best of %d runs%n", token_count, runs);
+        System.out.printf("scan:  %8.2f ms  %10.0f tokens/s%n", best_scan / 1e6, token_count / (best_scan / 1e9));
+        System.out.printf("parse: %8.2f ms  %10.0f tokens/s%n", best_parse / 1e6, token_count / (best_parse / 1e9));
+        System.out.printf("resolve: %6.2f ms%n", best_resolve / 1e6);
+    }
+
+    // Maps the file into memory and decodes it straight into the buffer the scanner reads
+    private static CharBuffer read_source(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Charset.defaultCharset().decode(bytes);
+        }
+    }
+
+    // Only a whole program is optimized: a REPL line can't know what later
+    // lines will redefine, and --lazy leaves bodies the passes can't see.
+    private static void run(CharBuffer source, boolean whole_program) throws IOException {
+        Scanner scanner = new Scanner(source.array(), source.limit());
+        TokenBuffer tokens = scanner.scan_tokens();
+
+        Resolver resolver = new Resolver();
+        Parser parser = new Parser(tokens, lazy_bodies, single_pass ? resolver : null);
+        boolean debugging = !break_lines.isEmpty() && whole_program;
+        if (debugging) {
+            parser.lines = new IdentityHashMap<>();
+            resolver.scopes_before = new IdentityHashMap<>();
+        }
         List<Stmt> statements = parser.parse();
 
         if (had_error)
             return;
 
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
+        if (!single_pass) {
+            resolver.resolve(statements);
 
-        if (had_error)
-            return;
+            if (had_error)
+                return;
+        }
+
+        if (debugging) {
+            interpreter.debugger = new Debugger(interpreter, statements, parser.lines, resolver.scopes_before);
+            for (int line : break_lines) {
+                interpreter.debugger.set_breakpoint(line);
+            }
+        }
+
+        Profile profile = null;
+        if (profile_out != null && whole_program) {
+            profile = new Profile(statements, source.hashCode());
+            interpreter.profile = profile;
+        } else if (optimize && whole_program && !lazy_bodies) {
+            Profile recorded = profile_in == null ? null : Profile.read(profile_in, statements, source.hashCode());
+            statements = Optimizer.optimize(statements, recorded);
+        }
 
         interpreter.interpret(statements);
+
+        if (profile != null)
+            profile.write(profile_out);
     }
 
     static void error(int line, String message) {
@@ -84,7 +259,17 @@ public class Reigai {
     }
 
     static void runtime_error(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        if (error.token == null) {
+            System.err.println(error.getMessage());
+        } else {
+            System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        }
+        int shown = Math.min(error.trace_size(), MAX_TRACE);
+        for (int i = 0; i < shown; i++) {
+            System.err.println("  " + error.trace_line(i));
+        }
+        if (shown < error.trace_size())
+            System.err.println("  ... " + (error.trace_size() - shown) + " more");
         had_runtime_error = true;
     }
 